@@ -18,8 +18,23 @@
 
 package com.withertech.witherlib;
 
+import com.withertech.witherlib.command.WitherLibCommand;
+import com.withertech.witherlib.config.ClientConfig;
+import com.withertech.witherlib.config.ServerConfig;
+import com.withertech.witherlib.fluid.FluidGrid;
+import com.withertech.witherlib.grid.GridManager;
+import com.withertech.witherlib.network.FluidGridSyncPacket;
+import com.withertech.witherlib.network.PacketExecution;
+import com.withertech.witherlib.network.TileEntitySyncPacket;
+import com.withertech.witherlib.registration.BuilderConfigRegistry;
 import com.withertech.witherlib.registration.BuilderMod;
+import com.withertech.witherlib.registration.BuilderNetworkRegistry;
 import com.withertech.witherlib.registration.ModData;
+import com.withertech.witherlib.registration.TypedRegKey;
+import com.withertech.witherlib.tile.ParallelMachineScheduler;
+import com.withertech.witherlib.tile.TileSyncScheduler;
+import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.eventbus.api.EventPriority;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.javafmlmod.FMLJavaModLoadingContext;
 import org.apache.logging.log4j.LogManager;
@@ -43,6 +58,10 @@ public class WitherLib extends BuilderMod
 	 * The Singleton Instance
 	 */
 	public static WitherLib INSTANCE;
+	/**
+	 * The server config, resolved once the configs are registered
+	 */
+	public static ServerConfig SERVER_CONFIG;
 
 	/**
 	 * The Mod Constructor
@@ -51,7 +70,36 @@ public class WitherLib extends BuilderMod
 	{
 		super(new ModData(MODID, FMLJavaModLoadingContext.get().getModEventBus()));
 		INSTANCE = this;
+		SERVER_CONFIG = REGISTRY.getConfig(TypedRegKey.config("server", ServerConfig.class));
+		MinecraftForge.EVENT_BUS.addListener(GridManager::onWorldTick);
+		MinecraftForge.EVENT_BUS.addListener(GridManager::onWorldUnload);
+		MinecraftForge.EVENT_BUS.addListener(FluidGrid::onChunkWatch);
+		// machines must be processed before the tile updates of this tick are sent
+		MinecraftForge.EVENT_BUS.addListener(EventPriority.HIGH, ParallelMachineScheduler::onWorldTick);
+		MinecraftForge.EVENT_BUS.addListener(ParallelMachineScheduler::onWorldUnload);
+		MinecraftForge.EVENT_BUS.addListener(TileSyncScheduler::onWorldTick);
+		MinecraftForge.EVENT_BUS.addListener(TileSyncScheduler::onWorldUnload);
+		MinecraftForge.EVENT_BUS.addListener(WitherLibCommand::onRegisterCommands);
 	}
 
+	@Override
+	protected BuilderNetworkRegistry registerNets()
+	{
+		return BuilderNetworkRegistry.builder(MOD)
+				.add("main", BuilderNetworkRegistry.channel()
+						.add(TileEntitySyncPacket.class, TileEntitySyncPacket::new, PacketExecution.MAIN_THREAD, true)
+						.add(FluidGridSyncPacket.class, FluidGridSyncPacket::new, PacketExecution.MAIN_THREAD)
+						.build())
+				.build();
+	}
+
+	@Override
+	protected BuilderConfigRegistry registerConfigs()
+	{
+		return BuilderConfigRegistry.builder(MOD)
+				.add(TypedRegKey.config("client", ClientConfig.class), ClientConfig::new)
+				.add(TypedRegKey.config("server", ServerConfig.class), ServerConfig::new)
+				.build();
+	}
 
 }
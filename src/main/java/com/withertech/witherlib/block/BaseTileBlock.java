@@ -18,8 +18,11 @@
 
 package com.withertech.witherlib.block;
 
+import com.withertech.witherlib.grid.GridManager;
+import com.withertech.witherlib.grid.IGridNode;
 import com.withertech.witherlib.item.IWrench;
 import com.withertech.witherlib.tile.BaseTileEntity;
+import com.withertech.witherlib.tile.MachineTileEntity;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockRenderType;
 import net.minecraft.block.BlockState;
@@ -42,6 +45,7 @@ import net.minecraft.util.math.BlockRayTraceResult;
 import net.minecraft.util.math.RayTraceResult;
 import net.minecraft.util.text.ITextComponent;
 import net.minecraft.world.IBlockReader;
+import net.minecraft.world.IWorldReader;
 import net.minecraft.world.World;
 import net.minecraftforge.fml.network.NetworkHooks;
 
@@ -135,6 +139,53 @@ public abstract class BaseTileBlock<T extends BaseTileEntity<T>> extends Block
 
 	}
 
+	@SuppressWarnings({"deprecation", "rawtypes"})
+	@Override
+	public void neighborChanged(
+			@Nonnull BlockState state,
+			@Nonnull World world,
+			@Nonnull BlockPos pos,
+			@Nonnull Block block,
+			@Nonnull BlockPos fromPos,
+			boolean isMoving
+	)
+	{
+		super.neighborChanged(state, world, pos, block, fromPos, isMoving);
+		TileEntity tile = world.getBlockEntity(pos);
+		if (tile instanceof BaseTileEntity)
+		{
+			((BaseTileEntity) tile).onNeighbourChanged(fromPos);
+		}
+		if (tile instanceof MachineTileEntity)
+		{
+			((MachineTileEntity) tile).wake();
+		}
+		if (tile instanceof IGridNode && !world.isClientSide())
+		{
+			GridManager.onNeighbourChanged((IGridNode) tile);
+		}
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Override
+	public void onNeighborChange(BlockState state, IWorldReader world, BlockPos pos, BlockPos neighbor)
+	{
+		super.onNeighborChange(state, world, pos, neighbor);
+		TileEntity tile = world.getBlockEntity(pos);
+		if (tile instanceof BaseTileEntity)
+		{
+			((BaseTileEntity) tile).onNeighbourChanged(neighbor);
+		}
+		if (tile instanceof MachineTileEntity)
+		{
+			((MachineTileEntity) tile).wake();
+		}
+		if (tile instanceof IGridNode && !world.isClientSide())
+		{
+			GridManager.onNeighbourChanged((IGridNode) tile);
+		}
+	}
+
 	protected abstract boolean hasContainer();
 
 	protected abstract Container createMenu(int id, PlayerEntity player, BlockPos pos);
@@ -188,8 +239,8 @@ public abstract class BaseTileBlock<T extends BaseTileEntity<T>> extends Block
 			return items;
 		}
 
-		CompoundNBT tileTag = ((BaseTileEntity) tile).writeItemStackData();
-		if (tileTag == null || tileTag.isEmpty())
+		CompoundNBT tileTag = ((BaseTileEntity) tile).getItemStackData();
+		if (tileTag == null)
 		{
 			return items;
 		}
@@ -197,11 +248,14 @@ public abstract class BaseTileBlock<T extends BaseTileEntity<T>> extends Block
 		CompoundNBT tag = new CompoundNBT();
 		tag.put("tileData", tileTag);
 
+		// the first stack takes the copy from the tile entity, others get their own so they don't share a tag
+		boolean shared = false;
 		for (ItemStack stack : items)
 		{
 			if (stack.getItem() instanceof BlockItem && ((BlockItem) stack.getItem()).getBlock() == this)
 			{
-				stack.setTag(tag);
+				stack.setTag(shared ? tag.copy() : tag);
+				shared = true;
 			}
 		}
 
@@ -231,8 +285,8 @@ public abstract class BaseTileBlock<T extends BaseTileEntity<T>> extends Block
 			return stack;
 		}
 
-		CompoundNBT tileTag = ((BaseTileEntity) tile).writeItemStackData();
-		if (tileTag == null || tileTag.isEmpty())
+		CompoundNBT tileTag = ((BaseTileEntity) tile).getItemStackData();
+		if (tileTag == null)
 		{
 			return stack;
 		}
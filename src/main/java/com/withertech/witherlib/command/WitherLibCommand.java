@@ -0,0 +1,197 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.withertech.witherlib.command;
+
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.builder.ArgumentBuilder;
+import com.withertech.witherlib.WitherLib;
+import com.withertech.witherlib.network.BasePacket;
+import com.withertech.witherlib.network.PacketChannel;
+import com.withertech.witherlib.network.PacketMetrics;
+import com.withertech.witherlib.tile.TileProfiler;
+import com.withertech.witherlib.util.TextComponents;
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.Commands;
+import net.minecraft.util.text.TextFormatting;
+import net.minecraftforge.event.RegisterCommandsEvent;
+import net.minecraftforge.fml.loading.FMLPaths;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code /witherlib} server command
+ */
+public class WitherLibCommand
+{
+	public static void onRegisterCommands(RegisterCommandsEvent event)
+	{
+		event.getDispatcher().register(
+				Commands.literal("witherlib")
+						.requires(source -> source.hasPermission(2))
+						.then(netStats())
+						.then(tileProfile())
+		);
+	}
+
+	/**
+	 * {@code /witherlib netstats [seconds]} lists the traffic per packet type of every channel, heaviest first
+	 */
+	private static ArgumentBuilder<CommandSource, ?> netStats()
+	{
+		return Commands.literal("netstats")
+				.executes(context -> netStats(context.getSource(), PacketMetrics.WINDOW))
+				.then(Commands.argument("seconds", IntegerArgumentType.integer(1, PacketMetrics.WINDOW))
+						.executes(context -> netStats(
+								context.getSource(),
+								IntegerArgumentType.getInteger(context, "seconds")
+						)));
+	}
+
+	private static int netStats(CommandSource source, int seconds)
+	{
+		int lines = 0;
+		for (PacketChannel channel : PacketChannel.getChannels())
+		{
+			List<Map.Entry<Class<? extends BasePacket>, PacketMetrics.Snapshot>> entries =
+					new ArrayList<>(channel.getMetrics().getSnapshot(seconds).entrySet());
+			if (entries.isEmpty())
+			{
+				continue;
+			}
+			entries.sort(Comparator.comparingLong(
+					(Map.Entry<Class<? extends BasePacket>, PacketMetrics.Snapshot> entry) ->
+							entry.getValue().getSentBytes() + entry.getValue().getReceivedBytes()).reversed());
+			source.sendSuccess(TextComponents.string(channel.getName() + " (last " + seconds + "s)")
+					.color(TextFormatting.GOLD).get(), false);
+			for (Map.Entry<Class<? extends BasePacket>, PacketMetrics.Snapshot> entry : entries)
+			{
+				PacketMetrics.Snapshot stats = entry.getValue();
+				source.sendSuccess(TextComponents.string(String.format(
+						" %s: sent %d (%d B), received %d (%d B), decode %s, inline %s, queued %s",
+						entry.getKey().getSimpleName(),
+						stats.getSentCount(), stats.getSentBytes(),
+						stats.getReceivedCount(), stats.getReceivedBytes(),
+						average(stats.getDecodeNanos(), stats.getReceivedCount()),
+						average(stats.getInlineHandleNanos(), stats.getInlineHandleCount()),
+						average(stats.getQueuedHandleNanos(), stats.getQueuedHandleCount())
+				)).get(), false);
+			}
+			lines += entries.size();
+		}
+		if (lines == 0)
+		{
+			source.sendSuccess(TextComponents.string("No packets in the last " + seconds + "s").get(), false);
+		}
+		return lines;
+	}
+
+	/**
+	 * {@code /witherlib tileprofile start|stop|dump [count]|csv} controls the {@link TileProfiler}
+	 */
+	private static ArgumentBuilder<CommandSource, ?> tileProfile()
+	{
+		return Commands.literal("tileprofile")
+				.then(Commands.literal("start").executes(context ->
+				{
+					TileProfiler.start();
+					context.getSource().sendSuccess(TextComponents.string("Started tile profiler").get(), true);
+					return 1;
+				}))
+				.then(Commands.literal("stop").executes(context ->
+				{
+					TileProfiler.stop();
+					context.getSource().sendSuccess(TextComponents.string("Stopped tile profiler").get(), true);
+					return 1;
+				}))
+				.then(Commands.literal("dump")
+						.executes(context -> tileProfileDump(context.getSource(), 10))
+						.then(Commands.argument("count", IntegerArgumentType.integer(1))
+								.executes(context -> tileProfileDump(
+										context.getSource(),
+										IntegerArgumentType.getInteger(context, "count")
+								))))
+				.then(Commands.literal("csv").executes(context -> tileProfileCsv(context.getSource())));
+	}
+
+	private static int tileProfileDump(CommandSource source, int count)
+	{
+		List<TileProfiler.Entry> entries = TileProfiler.getResults();
+		double seconds = TileProfiler.getDuration() / 1e9;
+		source.sendSuccess(TextComponents.string(String.format("Tile profile over %.1fs%s", seconds,
+				TileProfiler.isEnabled() ? " (running)" : "")).color(TextFormatting.GOLD).get(), false);
+		for (TileProfiler.Entry entry : entries.subList(0, Math.min(count, entries.size())))
+		{
+			source.sendSuccess(TextComponents.string(String.format(
+					" %s %s: %d calls, %.2fms/s, mean %s, p50 %s, p95 %s, p99 %s, max %s",
+					entry.getType().getRegistryName(),
+					entry.getSection().name().toLowerCase(),
+					entry.getCount(),
+					seconds == 0 ? 0 : entry.getTotal() / 1e6 / seconds,
+					micros(entry.getMean()),
+					micros(entry.getPercentile(0.5)),
+					micros(entry.getPercentile(0.95)),
+					micros(entry.getPercentile(0.99)),
+					micros(entry.getMax())
+			)).get(), false);
+		}
+		return entries.size();
+	}
+
+	private static int tileProfileCsv(CommandSource source)
+	{
+		String time = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+		Path path = FMLPaths.GAMEDIR.get().resolve(WitherLib.MODID).resolve("tileprofile-" + time + ".csv");
+		try
+		{
+			Files.createDirectories(path.getParent());
+			try (Writer writer = Files.newBufferedWriter(path))
+			{
+				TileProfiler.writeCsv(writer);
+			}
+		} catch (IOException e)
+		{
+			WitherLib.LOGGER.error("Failed to write tile profile to " + path, e);
+			source.sendFailure(TextComponents.string("Failed to write " + path + ": " + e.getMessage()).get());
+			return 0;
+		}
+		source.sendSuccess(TextComponents.string("Wrote tile profile to " + path).get(), false);
+		return 1;
+	}
+
+	private static String micros(long nanos)
+	{
+		return String.format("%.1fus", nanos / 1000d);
+	}
+
+	/**
+	 * Formats the average time per packet in microseconds
+	 */
+	private static String average(long nanos, long count)
+	{
+		return count == 0 ? "-" : String.format("%.1fus", nanos / (double) count / 1000);
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.withertech.witherlib.config;
+
+import net.minecraftforge.common.ForgeConfigSpec;
+import net.minecraftforge.fml.config.ModConfig;
+
+public final class ServerConfig extends BaseConfig
+{
+	public final ForgeConfigSpec.IntValue syncInterval;
+
+	public ServerConfig(ForgeConfigSpec.Builder builder)
+	{
+		super(builder);
+		builder.push("server");
+		syncInterval = builder
+				.comment("Minimum number of ticks between two update packets of the same tile entity")
+				.defineInRange("syncInterval", 1, 1, 1200);
+		builder.pop();
+	}
+
+	@Override
+	public ModConfig.Type getType()
+	{
+		return ModConfig.Type.SERVER;
+	}
+}
@@ -0,0 +1,266 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.withertech.witherlib.energy;
+
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraftforge.common.util.INBTSerializable;
+import net.minecraftforge.energy.IEnergyStorage;
+
+import javax.annotation.Nullable;
+
+/**
+ * An energy storage holding up to {@link Long#MAX_VALUE} energy. The {@link IEnergyStorage} methods
+ * saturate at {@link Integer#MAX_VALUE}, the {@code long} methods expose the full amounts.
+ * Unlike Forge's {@link net.minecraftforge.energy.EnergyStorage} its state is accessible directly, so it can
+ * be saved and synced as a {@link com.withertech.witherlib.nbt.SyncVariable} without reflection.
+ *
+ * @author Witherking25
+ */
+public class EnergyBuffer implements IEnergyStorage, INBTSerializable<CompoundNBT>
+{
+	private long energy;
+	private long capacity;
+	private long maxReceive;
+	private long maxExtract;
+	@Nullable
+	private Runnable listener;
+
+	public EnergyBuffer(long capacity)
+	{
+		this(capacity, capacity, capacity, 0);
+	}
+
+	public EnergyBuffer(long capacity, long maxTransfer)
+	{
+		this(capacity, maxTransfer, maxTransfer, 0);
+	}
+
+	public EnergyBuffer(long capacity, long maxReceive, long maxExtract)
+	{
+		this(capacity, maxReceive, maxExtract, 0);
+	}
+
+	public EnergyBuffer(long capacity, long maxReceive, long maxExtract, long energy)
+	{
+		this.capacity = Math.max(capacity, 0);
+		this.maxReceive = Math.max(maxReceive, 0);
+		this.maxExtract = Math.max(maxExtract, 0);
+		this.energy = Math.max(Math.min(energy, this.capacity), 0);
+	}
+
+	/**
+	 * Sets the listener which is called whenever the stored energy changes, e.g. {@code tile::dataChanged}.
+	 * Simulated transfers and transfers of zero energy don't call the listener.
+	 *
+	 * @param listener the listener, or {@code null} to remove it
+	 * @return this buffer
+	 */
+	public EnergyBuffer setListener(@Nullable Runnable listener)
+	{
+		this.listener = listener;
+		return this;
+	}
+
+	/**
+	 * Called when the stored energy or the capacity changes. Calls the {@link #setListener(Runnable) listener}
+	 * by default.
+	 */
+	protected void onContentsChanged()
+	{
+		if (this.listener != null)
+		{
+			this.listener.run();
+		}
+	}
+
+	/**
+	 * Adds energy to the buffer.
+	 *
+	 * @param maxReceive the maximum amount of energy to add
+	 * @param simulate   whether the transfer should only be simulated
+	 * @return the amount of energy which was (or would have been) added
+	 */
+	public long receive(long maxReceive, boolean simulate)
+	{
+		if (maxReceive <= 0)
+		{
+			return 0;
+		}
+		long received = Math.min(this.capacity - this.energy, Math.min(this.maxReceive, maxReceive));
+		if (!simulate && received > 0)
+		{
+			this.energy += received;
+			this.onContentsChanged();
+		}
+		return received;
+	}
+
+	/**
+	 * Removes energy from the buffer.
+	 *
+	 * @param maxExtract the maximum amount of energy to remove
+	 * @param simulate   whether the transfer should only be simulated
+	 * @return the amount of energy which was (or would have been) removed
+	 */
+	public long extract(long maxExtract, boolean simulate)
+	{
+		if (maxExtract <= 0)
+		{
+			return 0;
+		}
+		long extracted = Math.min(this.energy, Math.min(this.maxExtract, maxExtract));
+		if (!simulate && extracted > 0)
+		{
+			this.energy -= extracted;
+			this.onContentsChanged();
+		}
+		return extracted;
+	}
+
+	public long getEnergy()
+	{
+		return this.energy;
+	}
+
+	/**
+	 * Sets the stored energy, ignoring the transfer limits. The amount is clamped to the capacity.
+	 *
+	 * @param energy the new amount of energy
+	 */
+	public void setEnergy(long energy)
+	{
+		energy = Math.max(Math.min(energy, this.capacity), 0);
+		if (energy != this.energy)
+		{
+			this.energy = energy;
+			this.onContentsChanged();
+		}
+	}
+
+	public long getCapacity()
+	{
+		return this.capacity;
+	}
+
+	/**
+	 * Sets the capacity, removing the energy which no longer fits.
+	 *
+	 * @param capacity the new capacity
+	 */
+	public void setCapacity(long capacity)
+	{
+		capacity = Math.max(capacity, 0);
+		if (capacity != this.capacity)
+		{
+			this.capacity = capacity;
+			this.energy = Math.min(this.energy, capacity);
+			this.onContentsChanged();
+		}
+	}
+
+	public long getMaxReceive()
+	{
+		return this.maxReceive;
+	}
+
+	public void setMaxReceive(long maxReceive)
+	{
+		this.maxReceive = Math.max(maxReceive, 0);
+	}
+
+	public long getMaxExtract()
+	{
+		return this.maxExtract;
+	}
+
+	public void setMaxExtract(long maxExtract)
+	{
+		this.maxExtract = Math.max(maxExtract, 0);
+	}
+
+	/**
+	 * Sets all state at once, without calling the listener. Used when reading saved or synced data.
+	 */
+	public void load(long energy, long capacity, long maxReceive, long maxExtract)
+	{
+		this.capacity = Math.max(capacity, 0);
+		this.maxReceive = Math.max(maxReceive, 0);
+		this.maxExtract = Math.max(maxExtract, 0);
+		this.energy = Math.max(Math.min(energy, this.capacity), 0);
+	}
+
+	private static int saturate(long value)
+	{
+		return (int) Math.min(value, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int receiveEnergy(int maxReceive, boolean simulate)
+	{
+		return (int) this.receive(maxReceive, simulate);
+	}
+
+	@Override
+	public int extractEnergy(int maxExtract, boolean simulate)
+	{
+		return (int) this.extract(maxExtract, simulate);
+	}
+
+	@Override
+	public int getEnergyStored()
+	{
+		return saturate(this.energy);
+	}
+
+	@Override
+	public int getMaxEnergyStored()
+	{
+		return saturate(this.capacity);
+	}
+
+	@Override
+	public boolean canExtract()
+	{
+		return this.maxExtract > 0;
+	}
+
+	@Override
+	public boolean canReceive()
+	{
+		return this.maxReceive > 0;
+	}
+
+	@Override
+	public CompoundNBT serializeNBT()
+	{
+		CompoundNBT nbt = new CompoundNBT();
+		nbt.putLong("energy", this.energy);
+		nbt.putLong("capacity", this.capacity);
+		nbt.putLong("maxReceive", this.maxReceive);
+		nbt.putLong("maxExtract", this.maxExtract);
+		return nbt;
+	}
+
+	@Override
+	public void deserializeNBT(CompoundNBT nbt)
+	{
+		// getLong also reads the int tags written by EnergyStorageNBTWrapper
+		this.load(nbt.getLong("energy"), nbt.getLong("capacity"), nbt.getLong("maxReceive"), nbt.getLong("maxExtract"));
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.withertech.witherlib.energy;
+
+import com.withertech.witherlib.grid.Grid;
+import com.withertech.witherlib.grid.GridType;
+import net.minecraft.world.World;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.energy.CapabilityEnergy;
+import net.minecraftforge.energy.IEnergyStorage;
+
+import java.util.List;
+
+/**
+ * A grid of {@link IEnergyGridNode}s. Once per tick the energy stored in the nodes is distributed
+ * between the energy storages next to the grid, according to the grid's {@link com.withertech.witherlib.grid.TransferMode}.
+ *
+ * @author Witherking25
+ */
+public class EnergyGrid extends Grid<IEnergyGridNode, IEnergyStorage>
+{
+	public static final GridType<EnergyGrid> TYPE = new GridType<>("energy", EnergyGrid::new);
+
+	public EnergyGrid(World world)
+	{
+		super(world, TYPE);
+	}
+
+	@Override
+	protected Capability<IEnergyStorage> getCapability()
+	{
+		return CapabilityEnergy.ENERGY;
+	}
+
+	/**
+	 * @return the total energy stored in the nodes of this grid
+	 */
+	public long getEnergy()
+	{
+		long energy = 0;
+		for (IEnergyGridNode node : this.getNodes())
+		{
+			energy += node.getEnergyBuffer().getEnergy();
+		}
+		return energy;
+	}
+
+	@Override
+	protected void tick()
+	{
+		List<Edge<IEnergyGridNode, IEnergyStorage>> edges = this.getEdges();
+		if (edges.isEmpty())
+		{
+			return;
+		}
+		long available = 0;
+		for (IEnergyGridNode node : this.getNodes())
+		{
+			available += node.getEnergyBuffer().extract(Long.MAX_VALUE, true);
+		}
+		if (available <= 0)
+		{
+			return;
+		}
+
+		int count = edges.size();
+		long[] demands = this.getDemands(count);
+		for (int index = 0; index < count; index++)
+		{
+			IEnergyStorage storage = edges.get(index).get();
+			demands[index] = storage.canReceive() ? storage.receiveEnergy(Integer.MAX_VALUE, true) : 0;
+		}
+		long[] amounts = this.share(edges, demands, count, available);
+
+		long sent = 0;
+		for (int index = 0; index < count; index++)
+		{
+			if (amounts[index] > 0)
+			{
+				sent += edges.get(index).get().receiveEnergy((int) Math.min(amounts[index], Integer.MAX_VALUE), false);
+			}
+		}
+		for (IEnergyGridNode node : this.getNodes())
+		{
+			if (sent <= 0)
+			{
+				break;
+			}
+			sent -= node.getEnergyBuffer().extract(sent, false);
+		}
+	}
+}
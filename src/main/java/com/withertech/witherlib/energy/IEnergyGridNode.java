@@ -0,0 +1,44 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.withertech.witherlib.energy;
+
+import com.withertech.witherlib.grid.GridType;
+import com.withertech.witherlib.grid.IGridNode;
+
+/**
+ * A node of an {@link EnergyGrid}, such as a cable. Each node stores part of the grid's energy in its
+ * own {@link EnergyBuffer}, which it should save and expose as its energy capability, so energy pushed into
+ * any node is distributed through the whole grid.
+ *
+ * @author Witherking25
+ */
+public interface IEnergyGridNode extends IGridNode
+{
+	/**
+	 * @return the buffer of this node, its {@link EnergyBuffer#getMaxExtract()} limits how much energy
+	 * the grid takes from this node per tick
+	 */
+	EnergyBuffer getEnergyBuffer();
+
+	@Override
+	default GridType<?> getGridType()
+	{
+		return EnergyGrid.TYPE;
+	}
+}
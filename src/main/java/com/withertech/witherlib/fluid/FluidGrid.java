@@ -0,0 +1,274 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.withertech.witherlib.fluid;
+
+import com.withertech.witherlib.WitherLib;
+import com.withertech.witherlib.grid.Grid;
+import com.withertech.witherlib.grid.GridManager;
+import com.withertech.witherlib.grid.GridType;
+import com.withertech.witherlib.network.FluidGridSyncPacket;
+import com.withertech.witherlib.network.PacketChannel;
+import net.minecraft.entity.player.ServerPlayerEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.event.world.ChunkWatchEvent;
+import net.minecraftforge.fluids.FluidStack;
+import net.minecraftforge.fluids.capability.CapabilityFluidHandler;
+import net.minecraftforge.fluids.capability.IFluidHandler;
+import net.minecraftforge.fluids.capability.templates.FluidTank;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A grid of {@link IFluidGridNode}s carrying a single fluid. Once per tick the fluid stored in the nodes is
+ * distributed between the fluid handlers next to the grid, according to the grid's
+ * {@link com.withertech.witherlib.grid.TransferMode}.
+ * <p>
+ * Instead of every tank syncing itself, the grid sends its combined state to clients in one
+ * {@link FluidGridSyncPacket} per chunk, and only when the fluid or the fill level changes noticeably. Players who
+ * start watching a chunk are sent the state of the grids in it.
+ *
+ * @author Witherking25
+ */
+public class FluidGrid extends Grid<IFluidGridNode, IFluidHandler>
+{
+	public static final GridType<FluidGrid> TYPE = new GridType<>("fluid", FluidGrid::new);
+	/**
+	 * Number of fill levels clients are told about, changes within a level aren't synced
+	 */
+	private static final int SYNC_LEVELS = 32;
+
+	private FluidStack fluid = FluidStack.EMPTY;
+	private long amount;
+	private long capacity;
+	/**
+	 * Reused stack for simulated fills, only its amount changes
+	 */
+	private FluidStack probe = FluidStack.EMPTY;
+	private FluidStack syncedFluid = FluidStack.EMPTY;
+	private int syncedLevel = -1;
+	private boolean syncPending = true;
+	/**
+	 * Positions of the nodes by chunk, {@code null} until the next sync after the nodes changed
+	 */
+	private Map<Long, List<BlockPos>> chunks;
+
+	public FluidGrid(World world)
+	{
+		super(world, TYPE);
+	}
+
+	@Override
+	protected Capability<IFluidHandler> getCapability()
+	{
+		return CapabilityFluidHandler.FLUID_HANDLER_CAPABILITY;
+	}
+
+	@Override
+	protected void onNodeAdded(IFluidGridNode node)
+	{
+		// the new node has to be told the state
+		this.syncPending = true;
+		this.chunks = null;
+	}
+
+	@Override
+	protected void onNodeRemoved(IFluidGridNode node)
+	{
+		this.chunks = null;
+	}
+
+	/**
+	 * @return the fluid carried by this grid as of the last tick, may be empty
+	 */
+	public FluidStack getFluid()
+	{
+		return this.fluid;
+	}
+
+	/**
+	 * @return the amount of fluid in the nodes as of the last tick
+	 */
+	public long getAmount()
+	{
+		return this.amount;
+	}
+
+	/**
+	 * @return the combined capacity of the nodes as of the last tick
+	 */
+	public long getCapacity()
+	{
+		return this.capacity;
+	}
+
+	@Override
+	protected void tick()
+	{
+		this.updateState();
+		if (!this.fluid.isEmpty() && this.amount > 0)
+		{
+			this.distribute();
+			this.updateState();
+		}
+		this.sync();
+	}
+
+	/**
+	 * Sums the tanks of the nodes. The grid carries the fluid of the first non-empty tank.
+	 */
+	private void updateState()
+	{
+		FluidStack fluid = FluidStack.EMPTY;
+		long amount = 0;
+		long capacity = 0;
+		for (IFluidGridNode node : this.getNodes())
+		{
+			FluidTank tank = node.getFluidTank();
+			capacity += tank.getCapacity();
+			FluidStack stored = tank.getFluid();
+			if (stored.isEmpty())
+			{
+				continue;
+			}
+			if (fluid.isEmpty())
+			{
+				fluid = stored;
+			}
+			if (stored.isFluidEqual(fluid))
+			{
+				amount += stored.getAmount();
+			}
+		}
+		if (!fluid.isFluidEqual(this.fluid))
+		{
+			this.fluid = fluid.isEmpty() ? FluidStack.EMPTY : new FluidStack(fluid, 1);
+			this.probe = this.fluid.copy();
+		}
+		this.amount = amount;
+		this.capacity = capacity;
+	}
+
+	private void distribute()
+	{
+		List<Edge<IFluidGridNode, IFluidHandler>> edges = this.getEdges();
+		if (edges.isEmpty())
+		{
+			return;
+		}
+		int count = edges.size();
+		long[] demands = this.getDemands(count);
+		this.probe.setAmount((int) Math.min(this.amount, Integer.MAX_VALUE));
+		for (int index = 0; index < count; index++)
+		{
+			demands[index] = edges.get(index).get().fill(this.probe, IFluidHandler.FluidAction.SIMULATE);
+		}
+		long[] amounts = this.share(edges, demands, count, this.amount);
+
+		long sent = 0;
+		for (int index = 0; index < count; index++)
+		{
+			if (amounts[index] > 0)
+			{
+				// handlers may keep the stack, so only the probe is reused
+				sent += edges.get(index).get().fill(new FluidStack(this.fluid, (int) amounts[index]), IFluidHandler.FluidAction.EXECUTE);
+			}
+		}
+		for (IFluidGridNode node : this.getNodes())
+		{
+			if (sent <= 0)
+			{
+				break;
+			}
+			FluidTank tank = node.getFluidTank();
+			if (tank.getFluid().isFluidEqual(this.fluid))
+			{
+				sent -= tank.drain((int) Math.min(sent, Integer.MAX_VALUE), IFluidHandler.FluidAction.EXECUTE).getAmount();
+			}
+		}
+	}
+
+	private void sync()
+	{
+		int level = this.capacity == 0 ? 0 : (int) (this.amount * SYNC_LEVELS / this.capacity);
+		if (!this.syncPending && level == this.syncedLevel && this.fluid.isFluidEqual(this.syncedFluid))
+		{
+			return;
+		}
+		this.syncPending = false;
+		this.syncedLevel = level;
+		this.syncedFluid = this.fluid;
+
+		PacketChannel net = WitherLib.INSTANCE.REGISTRY.getNet();
+		for (List<BlockPos> positions : this.getChunks().values())
+		{
+			net.sendToAllTrackingChunk(
+					this.world,
+					positions.get(0),
+					new FluidGridSyncPacket(this.fluid, this.amount, this.capacity, positions)
+			);
+		}
+	}
+
+	/**
+	 * Sends the state of this grid to the given player, if it has nodes in the given chunk.
+	 */
+	private void syncTo(ServerPlayerEntity player, long chunk)
+	{
+		List<BlockPos> positions = this.getChunks().get(chunk);
+		if (positions != null)
+		{
+			WitherLib.INSTANCE.REGISTRY.getNet().sendToPlayer(
+					player,
+					new FluidGridSyncPacket(this.fluid, this.amount, this.capacity, positions)
+			);
+		}
+	}
+
+	private Map<Long, List<BlockPos>> getChunks()
+	{
+		if (this.chunks == null)
+		{
+			this.chunks = new HashMap<>();
+			for (IFluidGridNode node : this.getNodes())
+			{
+				BlockPos pos = node.getBlockPos();
+				this.chunks.computeIfAbsent(ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4), chunk -> new ArrayList<>()).add(pos);
+			}
+		}
+		return this.chunks;
+	}
+
+	public static void onChunkWatch(ChunkWatchEvent.Watch event)
+	{
+		long chunk = event.getPos().toLong();
+		for (Grid<?, ?> grid : GridManager.getGrids(event.getWorld()))
+		{
+			if (grid instanceof FluidGrid)
+			{
+				((FluidGrid) grid).syncTo(event.getPlayer(), chunk);
+			}
+		}
+	}
+}
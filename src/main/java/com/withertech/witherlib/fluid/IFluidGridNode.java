@@ -0,0 +1,57 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.withertech.witherlib.fluid;
+
+import com.withertech.witherlib.grid.GridType;
+import com.withertech.witherlib.grid.IGridNode;
+import net.minecraftforge.fluids.FluidStack;
+import net.minecraftforge.fluids.capability.templates.FluidTank;
+
+/**
+ * A node of a {@link FluidGrid}, such as a pipe. Each node stores part of the grid's fluid in its own tank,
+ * which it should save and expose as its fluid handler capability. The grid syncs its combined state to
+ * clients, so the tank should only call {@code setChanged()} when its contents change, not {@code dataChanged()}.
+ *
+ * @author Witherking25
+ */
+public interface IFluidGridNode extends IGridNode
+{
+	/**
+	 * @return the tank of this node
+	 */
+	FluidTank getFluidTank();
+
+	@Override
+	default GridType<?> getGridType()
+	{
+		return FluidGrid.TYPE;
+	}
+
+	/**
+	 * Called client-side when the state of the node's grid changed or the node's chunk started being watched, e.g. to
+	 * render the fluid in the pipe.
+	 *
+	 * @param fluid    the fluid in the grid, may be empty
+	 * @param amount   the amount of fluid in the whole grid
+	 * @param capacity the capacity of the whole grid
+	 */
+	default void onGridStateChanged(FluidStack fluid, long amount, long capacity)
+	{
+	}
+}
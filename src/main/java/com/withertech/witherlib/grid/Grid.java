@@ -0,0 +1,617 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.withertech.witherlib.grid;
+
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.util.LazyOptional;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A connected group of {@link IGridNode}s, ticked once per world tick by the {@link GridManager}.
+ * The non-node neighbours of the nodes are the edges of the grid. The capabilities of the edges are
+ * cached and only looked up again once they are invalidated or a neighbour of the node changes.
+ *
+ * @param <N> the type of the nodes
+ * @param <T> the capability the grid transfers through its edges
+ * @author Witherking25
+ */
+public abstract class Grid<N extends IGridNode, T>
+{
+	/**
+	 * Ticks between looking up neighbours again which had no capability
+	 */
+	private static final int RECHECK_INTERVAL = 20;
+	private static final Direction[] DIRECTIONS = Direction.values();
+
+	protected final World world;
+	private final GridType<?> type;
+	private final Map<BlockPos, NodeEntry<N, T>> nodes = new LinkedHashMap<>();
+	private final List<Edge<N, T>> edges = new ArrayList<>();
+	/**
+	 * Cached result of {@link #getNodes()}, cleared when a node is added or removed
+	 */
+	@Nullable
+	private List<N> nodeList;
+	private TransferMode mode = TransferMode.FAIR_SHARE;
+	private long[] demands = new long[16];
+	private long[] shares = new long[16];
+	private long[] tierDemands = new long[16];
+	private long[] tierShares = new long[16];
+	/**
+	 * Set when a node was removed, so the grid may have been split
+	 */
+	boolean split;
+
+	protected Grid(World world, GridType<?> type)
+	{
+		this.world = world;
+		this.type = type;
+	}
+
+	/**
+	 * @return the capability transferred through the edges of this grid
+	 */
+	protected abstract Capability<T> getCapability();
+
+	/**
+	 * Transfers between the nodes and edges of this grid. Called once per tick at the start of the world tick.
+	 */
+	protected abstract void tick();
+
+	/**
+	 * Called when a node was added, including nodes moved from a merged or split grid.
+	 */
+	protected void onNodeAdded(N node)
+	{
+	}
+
+	/**
+	 * Called when a node was removed, including nodes moved to a merged or split grid.
+	 */
+	protected void onNodeRemoved(N node)
+	{
+	}
+
+	public GridType<?> getType()
+	{
+		return this.type;
+	}
+
+	public World getWorld()
+	{
+		return this.world;
+	}
+
+	public TransferMode getTransferMode()
+	{
+		return this.mode;
+	}
+
+	public void setTransferMode(TransferMode mode)
+	{
+		this.mode = mode;
+	}
+
+	public int size()
+	{
+		return this.nodes.size();
+	}
+
+	public boolean isEmpty()
+	{
+		return this.nodes.isEmpty();
+	}
+
+	public boolean contains(BlockPos pos)
+	{
+		return this.nodes.containsKey(pos);
+	}
+
+	/**
+	 * @return the nodes of this grid, the list is cached until the nodes change
+	 */
+	public List<N> getNodes()
+	{
+		if (this.nodeList == null)
+		{
+			List<N> nodes = new ArrayList<>(this.nodes.size());
+			for (NodeEntry<N, T> entry : this.nodes.values())
+			{
+				nodes.add(entry.node);
+			}
+			this.nodeList = Collections.unmodifiableList(nodes);
+		}
+		return this.nodeList;
+	}
+
+	/**
+	 * Gets the edges of this grid which currently have the capability. Edges whose neighbour was removed or
+	 * unloaded are dropped, and edges which were invalidated are looked up again first. The returned list is
+	 * reused, so it must not be kept.
+	 *
+	 * @return the connected edges
+	 */
+	protected final List<Edge<N, T>> getEdges()
+	{
+		long time = this.world.getGameTime();
+		this.edges.clear();
+		for (NodeEntry<N, T> entry : this.nodes.values())
+		{
+			for (Edge<N, T> edge : entry.edges)
+			{
+				// unloading a chunk neither fires a neighbour update nor invalidates every capability
+				if (edge.value != null && (edge.tile.isRemoved() || !this.world.isLoaded(edge.pos)))
+				{
+					edge.invalidate();
+				}
+				if (edge.value == null && time >= edge.nextCheck)
+				{
+					this.resolve(edge, time);
+				}
+				if (edge.value != null)
+				{
+					this.edges.add(edge);
+				}
+			}
+		}
+		return this.edges;
+	}
+
+	/**
+	 * Gets an array to store the demands of {@code count} edges in. The array is reused, so it must not be kept.
+	 *
+	 * @param count the number of edges
+	 * @return an array of at least {@code count} elements
+	 */
+	protected final long[] getDemands(int count)
+	{
+		if (this.demands.length < count)
+		{
+			int length = Math.max(count, this.demands.length * 2);
+			this.demands = new long[length];
+			this.shares = new long[length];
+			this.tierDemands = new long[length];
+			this.tierShares = new long[length];
+		}
+		return this.demands;
+	}
+
+	/**
+	 * Splits the available amount between the edges according to the {@link #getTransferMode() transfer mode}.
+	 *
+	 * @param edges     the edges, as from {@link #getEdges()}
+	 * @param demands   the demand of each edge, from {@link #getDemands(int)}
+	 * @param count     the number of edges
+	 * @param available the amount to split
+	 * @return the amount to send to each edge, may be {@code demands} if all demands can be met
+	 */
+	protected final long[] share(List<Edge<N, T>> edges, long[] demands, int count, long available)
+	{
+		long demand = 0;
+		for (int index = 0; index < count; index++)
+		{
+			demand += demands[index];
+		}
+		if (demand <= available)
+		{
+			return demands;
+		}
+		if (this.mode == TransferMode.PRIORITY)
+		{
+			this.priorityShare(edges, demands, count, available);
+		} else
+		{
+			fairShare(demands, this.shares, count, available);
+		}
+		return this.shares;
+	}
+
+	/**
+	 * Serves the edges from the highest priority down, sharing fairly between edges of the same priority.
+	 */
+	private void priorityShare(List<Edge<N, T>> edges, long[] demands, int count, long available)
+	{
+		Arrays.fill(this.shares, 0, count, 0);
+		long upper = Long.MAX_VALUE;
+		while (available > 0)
+		{
+			int priority = 0;
+			boolean found = false;
+			for (int index = 0; index < count; index++)
+			{
+				int edgePriority = edges.get(index).getPriority();
+				if (demands[index] > 0 && edgePriority < upper && (!found || edgePriority > priority))
+				{
+					priority = edgePriority;
+					found = true;
+				}
+			}
+			if (!found)
+			{
+				return;
+			}
+			long demand = 0;
+			for (int index = 0; index < count; index++)
+			{
+				this.tierDemands[index] = edges.get(index).getPriority() == priority ? demands[index] : 0;
+				demand += this.tierDemands[index];
+			}
+			long[] tierShares = this.tierDemands;
+			if (demand > available)
+			{
+				fairShare(this.tierDemands, this.tierShares, count, available);
+				tierShares = this.tierShares;
+			}
+			for (int index = 0; index < count; index++)
+			{
+				if (edges.get(index).getPriority() == priority)
+				{
+					this.shares[index] = tierShares[index];
+					available -= tierShares[index];
+				}
+			}
+			upper = priority;
+		}
+	}
+
+	/**
+	 * Splits the available amount between the given demands: demands below an equal share are met in full,
+	 * and what remains is shared equally between the others.
+	 *
+	 * @param demands   the demands, which are left untouched
+	 * @param shares    receives the share of each demand, at least {@code count} long
+	 * @param count     the number of demands
+	 * @param available the amount to split
+	 */
+	protected static void fairShare(long[] demands, long[] shares, int count, long available)
+	{
+		int open = 0;
+		for (int index = 0; index < count; index++)
+		{
+			// -1 marks demands which didn't get their share yet
+			shares[index] = demands[index] > 0 ? -1 : 0;
+			if (demands[index] > 0)
+			{
+				open++;
+			}
+		}
+		while (open > 0)
+		{
+			long share = available / open;
+			boolean met = false;
+			for (int index = 0; index < count; index++)
+			{
+				if (shares[index] < 0 && demands[index] <= share)
+				{
+					shares[index] = demands[index];
+					available -= demands[index];
+					open--;
+					met = true;
+				}
+			}
+			if (!met)
+			{
+				for (int index = 0; index < count; index++)
+				{
+					if (shares[index] < 0)
+					{
+						shares[index] = share;
+					}
+				}
+				return;
+			}
+		}
+	}
+
+	private void resolve(Edge<N, T> edge, long time)
+	{
+		edge.nextCheck = time + RECHECK_INTERVAL;
+		edge.tile = null;
+		if (!edge.node.canConnect(edge.direction))
+		{
+			return;
+		}
+		if (!this.world.isLoaded(edge.pos))
+		{
+			return;
+		}
+		TileEntity tile = this.world.getBlockEntity(edge.pos);
+		if (tile == null || tile.isRemoved())
+		{
+			return;
+		}
+		edge.tile = tile;
+		if (tile instanceof IGridNode && ((IGridNode) tile).getGridType() == this.type)
+		{
+			// connected nodes aren't edges, this changes through a neighbour update
+			edge.nextCheck = Long.MAX_VALUE;
+			return;
+		}
+		LazyOptional<T> capability = tile.getCapability(this.getCapability(), edge.direction.getOpposite());
+		T value = capability.orElse(null);
+		if (value != null)
+		{
+			edge.capability = capability;
+			edge.value = value;
+			// neighbour updates often resolve the same optional again, which must not collect listeners
+			if (edge.listening != capability)
+			{
+				edge.listening = capability;
+				capability.addListener(invalidated ->
+				{
+					if (edge.capability == invalidated)
+					{
+						edge.invalidate();
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Marks the edges of the node at the given position to be looked up again, unless their neighbour is still the
+	 * same tile entity. Changes of its capabilities invalidate the edge through the capability's listener.
+	 */
+	void invalidateEdges(BlockPos pos)
+	{
+		NodeEntry<N, T> entry = this.nodes.get(pos);
+		if (entry != null)
+		{
+			for (Edge<N, T> edge : entry.edges)
+			{
+				// connected nodes are looked up again, they may have stopped connecting
+				if (edge.tile == null || edge.tile instanceof IGridNode || edge.tile.isRemoved() ||
+						!this.world.isLoaded(edge.pos) || this.world.getBlockEntity(edge.pos) != edge.tile)
+				{
+					edge.invalidate();
+				}
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	void add(IGridNode node)
+	{
+		this.put(new NodeEntry<>((N) node));
+	}
+
+	private void put(NodeEntry<N, T> entry)
+	{
+		this.nodes.put(entry.node.getBlockPos(), entry);
+		this.nodeList = null;
+		this.onNodeAdded(entry.node);
+	}
+
+	boolean remove(BlockPos pos)
+	{
+		NodeEntry<N, T> entry = this.nodes.remove(pos);
+		if (entry != null)
+		{
+			this.nodeList = null;
+			this.onNodeRemoved(entry.node);
+			this.split = true;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Moves all nodes of the given grid into this grid.
+	 */
+	@SuppressWarnings("unchecked")
+	void absorb(Grid<?, ?> other)
+	{
+		for (NodeEntry<?, ?> entry : other.nodes.values())
+		{
+			other.onNodeRemovedUnchecked(entry.node);
+			this.put((NodeEntry<N, T>) entry);
+		}
+		other.nodes.clear();
+		other.nodeList = null;
+		this.split |= other.split;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void onNodeRemovedUnchecked(IGridNode node)
+	{
+		this.onNodeRemoved((N) node);
+	}
+
+	/**
+	 * Splits off the nodes which are no longer connected to the first node into new grids.
+	 *
+	 * @return the new grids, may be empty
+	 */
+	List<Grid<?, ?>> split()
+	{
+		this.split = false;
+		if (this.nodes.size() <= 1)
+		{
+			return Collections.emptyList();
+		}
+		List<Grid<?, ?>> grids = new ArrayList<>();
+		Set<BlockPos> visited = new HashSet<>();
+		for (BlockPos start : new ArrayList<>(this.nodes.keySet()))
+		{
+			if (!visited.contains(start))
+			{
+				Set<BlockPos> component = this.collect(start, visited);
+				if (visited.size() == component.size())
+				{
+					// the first component stays in this grid
+					if (component.size() == this.nodes.size())
+					{
+						return Collections.emptyList();
+					}
+					continue;
+				}
+				Grid<N, T> grid = this.createSibling();
+				for (BlockPos pos : component)
+				{
+					NodeEntry<N, T> entry = this.nodes.remove(pos);
+					this.nodeList = null;
+					this.onNodeRemoved(entry.node);
+					grid.put(entry);
+				}
+				grids.add(grid);
+			}
+		}
+		return grids;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Grid<N, T> createSibling()
+	{
+		return (Grid<N, T>) this.type.create(this.world);
+	}
+
+	/**
+	 * Collects the nodes connected to the given node by a breadth first search through this grid.
+	 */
+	private Set<BlockPos> collect(BlockPos start, Set<BlockPos> visited)
+	{
+		Set<BlockPos> component = new HashSet<>();
+		Deque<BlockPos> queue = new ArrayDeque<>();
+		queue.add(start);
+		visited.add(start);
+		while (!queue.isEmpty())
+		{
+			BlockPos pos = queue.poll();
+			component.add(pos);
+			N node = this.nodes.get(pos).node;
+			for (Direction direction : DIRECTIONS)
+			{
+				BlockPos neighbour = pos.relative(direction);
+				NodeEntry<N, T> entry = this.nodes.get(neighbour);
+				if (entry != null && !visited.contains(neighbour) && node.canConnect(direction) &&
+						entry.node.canConnect(direction.getOpposite()))
+				{
+					visited.add(neighbour);
+					queue.add(neighbour);
+				}
+			}
+		}
+		return component;
+	}
+
+	private static final class NodeEntry<N extends IGridNode, T>
+	{
+		private final N node;
+		@SuppressWarnings("unchecked")
+		private final Edge<N, T>[] edges = new Edge[DIRECTIONS.length];
+
+		private NodeEntry(N node)
+		{
+			this.node = node;
+			for (Direction direction : DIRECTIONS)
+			{
+				this.edges[direction.ordinal()] = new Edge<>(node, direction);
+			}
+		}
+	}
+
+	/**
+	 * A side of a node which faces a tile entity with the capability of the grid.
+	 */
+	public static final class Edge<N extends IGridNode, T>
+	{
+		private final N node;
+		private final Direction direction;
+		/**
+		 * Position of the neighbour
+		 */
+		private final BlockPos pos;
+		@Nullable
+		private TileEntity tile;
+		@Nullable
+		private LazyOptional<T> capability;
+		/**
+		 * The capability this edge added its invalidation listener to
+		 */
+		@Nullable
+		private LazyOptional<T> listening;
+		@Nullable
+		private T value;
+		private long nextCheck;
+
+		private Edge(N node, Direction direction)
+		{
+			this.node = node;
+			this.direction = direction;
+			this.pos = node.getBlockPos().relative(direction);
+		}
+
+		/**
+		 * @return the node of this edge
+		 */
+		public N getNode()
+		{
+			return this.node;
+		}
+
+		/**
+		 * @return the side of the node facing the neighbour
+		 */
+		public Direction getDirection()
+		{
+			return this.direction;
+		}
+
+		/**
+		 * @return the priority of this edge
+		 * @see IGridNode#getPriority(Direction)
+		 */
+		public int getPriority()
+		{
+			return this.node.getPriority(this.direction);
+		}
+
+		/**
+		 * @return the capability of the neighbour
+		 */
+		public T get()
+		{
+			assert this.value != null;
+			return this.value;
+		}
+
+		private void invalidate()
+		{
+			this.tile = null;
+			this.capability = null;
+			this.value = null;
+			this.nextCheck = 0;
+		}
+	}
+}
@@ -0,0 +1,242 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.withertech.witherlib.grid;
+
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.world.WorldEvent;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Maintains the {@link Grid}s of each world. Grids are updated incrementally as nodes are loaded and
+ * removed: a new node joins the grid of its neighbours, merging them if there are several, and grids which
+ * lost a node are checked for being split once at the start of the next tick. Then every grid is ticked once.
+ *
+ * @author Witherking25
+ */
+public final class GridManager
+{
+	private static final Direction[] DIRECTIONS = Direction.values();
+	private static final Map<World, GridManager> MANAGERS = new WeakHashMap<>();
+
+	private final Set<Grid<?, ?>> grids = new LinkedHashSet<>();
+	private final Map<BlockPos, Grid<?, ?>> nodeGrids = new HashMap<>();
+	private final List<Grid<?, ?>> ticking = new ArrayList<>();
+
+	private GridManager()
+	{
+	}
+
+	/**
+	 * Adds the given node to the grid of its neighbours, or to a new grid. Must only be called server-side.
+	 *
+	 * @param node the node which was loaded or placed
+	 */
+	public static void join(IGridNode node)
+	{
+		World world = node.getLevel();
+		if (world == null || world.isClientSide())
+		{
+			throw new IllegalStateException("This must only be called server-side!");
+		}
+		MANAGERS.computeIfAbsent(world, w -> new GridManager()).add(world, node);
+	}
+
+	/**
+	 * Removes the given node from its grid.
+	 *
+	 * @param node the node which was removed or unloaded
+	 */
+	public static void leave(IGridNode node)
+	{
+		GridManager manager = MANAGERS.get(node.getLevel());
+		if (manager != null)
+		{
+			Grid<?, ?> grid = manager.nodeGrids.remove(node.getBlockPos());
+			if (grid != null)
+			{
+				grid.remove(node.getBlockPos());
+				if (grid.isEmpty())
+				{
+					manager.grids.remove(grid);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reconnects the given node, after the sides it {@link IGridNode#canConnect(Direction) connects to} changed.
+	 *
+	 * @param node the node which changed
+	 */
+	public static void refresh(IGridNode node)
+	{
+		leave(node);
+		join(node);
+	}
+
+	/**
+	 * Makes the grid look up the edges of the given node again, after one of its neighbours changed.
+	 *
+	 * @param node the node next to the changed block
+	 */
+	public static void onNeighbourChanged(IGridNode node)
+	{
+		Grid<?, ?> grid = getGrid(node);
+		if (grid != null)
+		{
+			grid.invalidateEdges(node.getBlockPos());
+		}
+	}
+
+	/**
+	 * @param node the node to get the grid of
+	 * @return the grid the given node is part of, or {@code null} if it isn't part of a grid
+	 */
+	@Nullable
+	public static Grid<?, ?> getGrid(IGridNode node)
+	{
+		GridManager manager = MANAGERS.get(node.getLevel());
+		return manager == null ? null : manager.nodeGrids.get(node.getBlockPos());
+	}
+
+	/**
+	 * @param world the world to get the grids of
+	 * @return the grids in the given world
+	 */
+	public static Collection<Grid<?, ?>> getGrids(World world)
+	{
+		GridManager manager = MANAGERS.get(world);
+		return manager == null ? Collections.emptySet() : Collections.unmodifiableSet(manager.grids);
+	}
+
+	public static void onWorldTick(TickEvent.WorldTickEvent event)
+	{
+		if (event.phase == TickEvent.Phase.START && !event.world.isClientSide())
+		{
+			GridManager manager = MANAGERS.get(event.world);
+			if (manager != null && !manager.grids.isEmpty())
+			{
+				manager.tick();
+			}
+		}
+	}
+
+	public static void onWorldUnload(WorldEvent.Unload event)
+	{
+		if (event.getWorld() instanceof World)
+		{
+			MANAGERS.remove((World) event.getWorld());
+		}
+	}
+
+	private void add(World world, IGridNode node)
+	{
+		BlockPos pos = node.getBlockPos();
+		if (this.nodeGrids.containsKey(pos))
+		{
+			return;
+		}
+		Grid<?, ?> grid = null;
+		for (Direction direction : DIRECTIONS)
+		{
+			BlockPos neighbourPos = pos.relative(direction);
+			Grid<?, ?> neighbour = this.nodeGrids.get(neighbourPos);
+			if (neighbour == null || neighbour == grid || neighbour.getType() != node.getGridType() ||
+					!node.canConnect(direction) || !world.isLoaded(neighbourPos))
+			{
+				continue;
+			}
+			TileEntity tile = world.getBlockEntity(neighbourPos);
+			if (!(tile instanceof IGridNode) || !((IGridNode) tile).canConnect(direction.getOpposite()))
+			{
+				continue;
+			}
+			grid = grid == null ? neighbour : this.merge(grid, neighbour);
+		}
+		if (grid == null)
+		{
+			grid = node.getGridType().create(world);
+			this.grids.add(grid);
+		}
+		grid.add(node);
+		this.nodeGrids.put(pos, grid);
+	}
+
+	/**
+	 * Moves the nodes of the smaller grid into the larger one.
+	 *
+	 * @return the merged grid
+	 */
+	private Grid<?, ?> merge(Grid<?, ?> first, Grid<?, ?> second)
+	{
+		Grid<?, ?> larger = first.size() >= second.size() ? first : second;
+		Grid<?, ?> smaller = larger == first ? second : first;
+		for (IGridNode node : smaller.getNodes())
+		{
+			this.nodeGrids.put(node.getBlockPos(), larger);
+		}
+		larger.absorb(smaller);
+		this.grids.remove(smaller);
+		return larger;
+	}
+
+	private void tick()
+	{
+		// ticking may place or remove nodes, which changes the grids
+		this.ticking.addAll(this.grids);
+		for (Grid<?, ?> grid : this.ticking)
+		{
+			if (grid.split)
+			{
+				for (Grid<?, ?> split : grid.split())
+				{
+					for (IGridNode node : split.getNodes())
+					{
+						this.nodeGrids.put(node.getBlockPos(), split);
+					}
+					this.grids.add(split);
+				}
+			}
+		}
+		this.ticking.clear();
+		this.ticking.addAll(this.grids);
+		for (Grid<?, ?> grid : this.ticking)
+		{
+			if (!grid.isEmpty() && this.grids.contains(grid))
+			{
+				grid.tick();
+			}
+		}
+		this.ticking.clear();
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.withertech.witherlib.grid;
+
+import net.minecraft.world.World;
+
+import java.util.function.Function;
+
+/**
+ * A type of {@link Grid}. Only {@link IGridNode}s of the same type connect to each other.
+ * Types are compared by identity, so each type should be a single constant.
+ *
+ * @param <G> the grid class
+ * @author Witherking25
+ */
+public final class GridType<G extends Grid<?, ?>>
+{
+	private final String name;
+	private final Function<World, G> factory;
+
+	public GridType(String name, Function<World, G> factory)
+	{
+		this.name = name;
+		this.factory = factory;
+	}
+
+	public String getName()
+	{
+		return this.name;
+	}
+
+	G create(World world)
+	{
+		return this.factory.apply(world);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "GridType{" + this.name + "}";
+	}
+}
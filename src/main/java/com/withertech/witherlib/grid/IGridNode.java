@@ -0,0 +1,69 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.withertech.witherlib.grid;
+
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import javax.annotation.Nullable;
+
+/**
+ * A tile entity which is part of a {@link Grid}, such as a cable or a pipe. Adjacent nodes of the same
+ * {@link GridType} form a grid. When implemented by a {@link com.withertech.witherlib.tile.BaseTileEntity},
+ * the tile entity joins and leaves its grid automatically when it is loaded and removed.
+ *
+ * @author Witherking25
+ */
+public interface IGridNode
+{
+	/**
+	 * @return the type of grid this node is part of
+	 */
+	GridType<?> getGridType();
+
+	/**
+	 * Whether the node connects to the given side. Two adjacent nodes only connect if both do.
+	 * Non-node neighbours on this side become edges of the grid. Call {@link GridManager#refresh(IGridNode)}
+	 * when the result changes.
+	 *
+	 * @param side the side of the node
+	 * @return {@code true} if the node connects to {@code side}
+	 */
+	default boolean canConnect(Direction side)
+	{
+		return true;
+	}
+
+	/**
+	 * The priority of the edge on the given side, used by grids in {@link TransferMode#PRIORITY} mode.
+	 *
+	 * @param side the side of the node
+	 * @return the priority, higher priorities are served first
+	 */
+	default int getPriority(Direction side)
+	{
+		return 0;
+	}
+
+	BlockPos getBlockPos();
+
+	@Nullable
+	World getLevel();
+}
@@ -0,0 +1,37 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.withertech.witherlib.grid;
+
+/**
+ * How a {@link Grid} splits what it has between the edges when they ask for more.
+ *
+ * @author Witherking25
+ */
+public enum TransferMode
+{
+	/**
+	 * Each edge gets an equal share, edges which ask for less than that get what they ask for
+	 */
+	FAIR_SHARE,
+	/**
+	 * Edges with a higher {@link IGridNode#getPriority priority} are served first, edges with the same
+	 * priority get a fair share
+	 */
+	PRIORITY
+}
@@ -21,13 +21,14 @@ package com.withertech.witherlib.gui.widget;
 import com.mojang.blaze3d.matrix.MatrixStack;
 import com.mojang.blaze3d.platform.GlStateManager;
 import com.withertech.witherlib.WitherLib;
+import com.withertech.witherlib.energy.EnergyBuffer;
 import com.withertech.witherlib.util.ScreenUtils;
 import com.withertech.witherlib.util.EnergyFormat;
 import net.minecraft.client.gui.screen.Screen;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.text.ITextComponent;
 import net.minecraft.util.text.StringTextComponent;
-import net.minecraftforge.energy.EnergyStorage;
+import net.minecraftforge.energy.IEnergyStorage;
 
 import java.util.Collections;
 import java.util.List;
@@ -44,14 +45,19 @@ public class EnergyBarWidget extends AbstractButtonWidget implements IHoverTextW
 	private static final int WIDTH = 20;
 	private static final int HEIGHT = 52;
 
-	private final Supplier<EnergyStorage> energy;
+	private final Supplier<? extends IEnergyStorage> energy;
 
-	public EnergyBarWidget(int x, int y, Supplier<EnergyStorage> energy)
+	private List<ITextComponent> hoverText;
+	private long hoverEnergy;
+	private long hoverCapacity;
+	private EnergyFormat.EnergyType hoverType;
+
+	public EnergyBarWidget(int x, int y, Supplier<? extends IEnergyStorage> energy)
 	{
 		this(x, y, 1, energy);
 	}
 
-	public EnergyBarWidget(int x, int y, int scale, Supplier<EnergyStorage> energy)
+	public EnergyBarWidget(int x, int y, int scale, Supplier<? extends IEnergyStorage> energy)
 	{
 		super(x, y, WIDTH * scale, HEIGHT * scale, () -> EnergyFormat.cycleEnergyType(!Screen.hasShiftDown()));
 		this.energy = energy;
@@ -73,8 +79,9 @@ public class EnergyBarWidget extends AbstractButtonWidget implements IHoverTextW
 				1 / 11f,
 				1
 		);
-		int energy = this.energy.get().getEnergyStored();
-		int capacity = this.energy.get().getMaxEnergyStored();
+		IEnergyStorage storage = this.energy.get();
+		long energy = getEnergy(storage);
+		long capacity = getCapacity(storage);
 		float percentage = capacity == 0 ? 1 : Math.max(Math.min(energy / (float) capacity, 1), 0);
 		if (percentage != 0)
 		{
@@ -95,9 +102,31 @@ public class EnergyBarWidget extends AbstractButtonWidget implements IHoverTextW
 	@Override
 	public List<ITextComponent> getHoverText()
 	{
-		int energy = this.energy.get().getEnergyStored();
-		int capacity = this.energy.get().getMaxEnergyStored();
-		return Collections.singletonList(new StringTextComponent(EnergyFormat.formatCapacity(energy, capacity)));
+		IEnergyStorage storage = this.energy.get();
+		long energy = getEnergy(storage);
+		long capacity = getCapacity(storage);
+		// only rebuild the text when the displayed values change, not every frame while hovering
+		if (this.hoverText == null || energy != this.hoverEnergy || capacity != this.hoverCapacity || EnergyFormat.getType() != this.hoverType)
+		{
+			this.hoverText = Collections.singletonList(new StringTextComponent(EnergyFormat.formatCapacity(energy, capacity)));
+			this.hoverEnergy = energy;
+			this.hoverCapacity = capacity;
+			this.hoverType = EnergyFormat.getType();
+		}
+		return this.hoverText;
+	}
+
+	/**
+	 * Reads the full amount from an {@link EnergyBuffer}, which may exceed {@link Integer#MAX_VALUE}
+	 */
+	private static long getEnergy(IEnergyStorage storage)
+	{
+		return storage instanceof EnergyBuffer ? ((EnergyBuffer) storage).getEnergy() : storage.getEnergyStored();
+	}
+
+	private static long getCapacity(IEnergyStorage storage)
+	{
+		return storage instanceof EnergyBuffer ? ((EnergyBuffer) storage).getCapacity() : storage.getMaxEnergyStored();
 	}
 
 	@Override
@@ -21,16 +21,16 @@ package com.withertech.witherlib.gui.widget;
 import com.mojang.blaze3d.matrix.MatrixStack;
 import com.mojang.blaze3d.systems.RenderSystem;
 import com.withertech.witherlib.WitherLib;
+import com.withertech.witherlib.util.NumberFormatting;
 import com.withertech.witherlib.util.ScreenUtils;
 import com.withertech.witherlib.util.TextComponents;
+import net.minecraft.fluid.Fluid;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.text.ITextComponent;
 import net.minecraftforge.fluids.capability.templates.FluidTank;
 
-import java.text.NumberFormat;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Locale;
 import java.util.function.Supplier;
 
 public class FluidTankWidget extends AbstractButtonWidget implements IHoverTextWidget
@@ -42,6 +42,11 @@ public class FluidTankWidget extends AbstractButtonWidget implements IHoverTextW
 
 	private final Supplier<FluidTank> tank;
 
+	private List<ITextComponent> hoverText;
+	private Fluid hoverFluid;
+	private int hoverAmount;
+	private int hoverCapacity;
+
 	public FluidTankWidget(int x, int y, Supplier<FluidTank> tank, Runnable onPress)
 	{
 		this(x, y, 1, tank, onPress);
@@ -56,19 +61,34 @@ public class FluidTankWidget extends AbstractButtonWidget implements IHoverTextW
 	@Override
 	public List<ITextComponent> getHoverText()
 	{
-		int amount = this.tank.get().getFluidAmount();
-		int capacity = this.tank.get().getCapacity();
-		List<ITextComponent> text = new ArrayList<>();
-		text.add(TextComponents.string(
-				((!tank.get().getFluid().isEmpty()) ?
-						(TextComponents.fluid(tank.get().getFluid().getFluid()).get().getString()) :
-						"Empty") + ": ").get());
-		text.add(TextComponents.string(
-				NumberFormat.getNumberInstance(Locale.getDefault()).format(amount) +
-						" / " +
-						NumberFormat.getNumberInstance(Locale.getDefault()).format(capacity) +
-						" mb").get());
-		return text;
+		FluidTank tank = this.tank.get();
+		Fluid fluid = tank.getFluid().getFluid();
+		int amount = tank.getFluidAmount();
+		int capacity = tank.getCapacity();
+		// only rebuild the text when the displayed values change, not every frame while hovering
+		if (this.hoverText == null || fluid != this.hoverFluid || amount != this.hoverAmount || capacity != this.hoverCapacity)
+		{
+			StringBuilder builder = NumberFormatting.builder();
+			if (tank.getFluid().isEmpty())
+			{
+				builder.append("Empty");
+			} else
+			{
+				builder.append(TextComponents.fluid(fluid).get().getString());
+			}
+			ITextComponent name = TextComponents.string(builder.append(": ").toString()).get();
+
+			builder = NumberFormatting.builder();
+			NumberFormatting.append(builder, amount).append(" / ");
+			NumberFormatting.append(builder, capacity).append(" mb");
+			ITextComponent contents = TextComponents.string(builder.toString()).get();
+
+			this.hoverText = Arrays.asList(name, contents);
+			this.hoverFluid = fluid;
+			this.hoverAmount = amount;
+			this.hoverCapacity = capacity;
+		}
+		return this.hoverText;
 	}
 
 
@@ -0,0 +1,91 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.withertech.witherlib.nbt;
+
+import net.minecraft.nbt.INBT;
+import net.minecraft.network.PacketBuffer;
+
+import javax.annotation.Nullable;
+
+/**
+ * Converts values of a type synced through {@link SyncVariable} to and from NBT and packet
+ * buffers. Codecs are registered in {@link SyncCodecs}.
+ *
+ * @param <T> the type of the values
+ * @author Witherking25
+ */
+public interface SyncCodec<T>
+{
+	/**
+	 * Writes the given value to a tag of any type.
+	 *
+	 * @param value the value to write, never {@code null}
+	 * @return the written tag, or {@code null} if there is nothing to write
+	 */
+	@Nullable
+	INBT write(T value);
+
+	/**
+	 * Reads a value written by {@link #write(Object)}. Codecs for mutable types may read the
+	 * tag into {@code current} and return it, in which case the field is left untouched.
+	 *
+	 * @param tag     the tag to read, {@code null} if nothing was written
+	 * @param current the current value of the field
+	 * @return the read value
+	 */
+	T read(@Nullable INBT tag, @Nullable T current);
+
+	/**
+	 * Writes the given value to the buffer. By default this writes the tag from {@link #write(Object)}.
+	 *
+	 * @param buffer the buffer to write to
+	 * @param value  the value to write, never {@code null}
+	 */
+	default void write(PacketBuffer buffer, T value)
+	{
+		SyncCodecs.writeTag(buffer, this.write(value));
+	}
+
+	/**
+	 * Reads a value written by {@link #write(PacketBuffer, Object)}.
+	 *
+	 * @param buffer  the buffer to read from
+	 * @param current the current value of the field
+	 * @return the read value
+	 */
+	default T read(PacketBuffer buffer, @Nullable T current)
+	{
+		return this.read(SyncCodecs.readTag(buffer), current);
+	}
+
+	/**
+	 * Gets a cheap fingerprint of the value, used by tile entities which detect changed sync variables
+	 * automatically. It is computed for every watched field each tick, so it must not allocate or
+	 * serialise the value, and should change whenever the written data changes. By default this returns
+	 * a constant, so changes to fields of this type are never detected and have to be marked through
+	 * {@code dataChanged}.
+	 *
+	 * @param value the value, never {@code null}
+	 * @return the fingerprint of the value
+	 * @see SyncCodecs#mix(long, long)
+	 */
+	default long fingerprint(T value)
+	{
+		return 0;
+	}
+}
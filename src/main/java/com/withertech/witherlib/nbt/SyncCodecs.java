@@ -0,0 +1,769 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.withertech.witherlib.nbt;
+
+import com.withertech.witherlib.energy.EnergyBuffer;
+import com.withertech.witherlib.nbt.wrappers.BitSetNBTWrapper;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.EncoderException;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.ByteNBT;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.nbt.DoubleNBT;
+import net.minecraft.nbt.FloatNBT;
+import net.minecraft.nbt.INBT;
+import net.minecraft.nbt.IntArrayNBT;
+import net.minecraft.nbt.IntNBT;
+import net.minecraft.nbt.LongArrayNBT;
+import net.minecraft.nbt.LongNBT;
+import net.minecraft.nbt.NBTSizeTracker;
+import net.minecraft.nbt.NBTTypes;
+import net.minecraft.nbt.NBTUtil;
+import net.minecraft.nbt.NumberNBT;
+import net.minecraft.nbt.ShortNBT;
+import net.minecraft.nbt.StringNBT;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraftforge.common.util.INBTSerializable;
+import net.minecraftforge.common.util.LazyOptional;
+import net.minecraftforge.fluids.FluidStack;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * The registry of {@link SyncCodec}s. A type uses the codec registered for the closest of its
+ * super classes, or otherwise for one of its interfaces. Registration is thread-safe.
+ *
+ * @author Witherking25
+ */
+public final class SyncCodecs
+{
+	private static final Map<Class<?>, SyncCodec<?>> CODECS = new ConcurrentHashMap<>();
+	/**
+	 * Resolved codecs per type, cleared whenever a codec is registered
+	 */
+	private static final Map<Class<?>, Optional<SyncCodec<?>>> RESOLVED = new ConcurrentHashMap<>();
+
+	static
+	{
+		register(Integer.class, new SyncCodec<Integer>()
+		{
+			@Override
+			public INBT write(Integer value)
+			{
+				return IntNBT.valueOf(value);
+			}
+
+			@Override
+			public Integer read(@Nullable INBT tag, @Nullable Integer current)
+			{
+				return tag instanceof NumberNBT ? ((NumberNBT) tag).getAsInt() : 0;
+			}
+
+			@Override
+			public void write(PacketBuffer buffer, Integer value)
+			{
+				buffer.writeVarInt(value);
+			}
+
+			@Override
+			public Integer read(PacketBuffer buffer, @Nullable Integer current)
+			{
+				return buffer.readVarInt();
+			}
+
+			@Override
+			public long fingerprint(Integer value)
+			{
+				return value;
+			}
+		});
+		register(Long.class, new SyncCodec<Long>()
+		{
+			@Override
+			public INBT write(Long value)
+			{
+				return LongNBT.valueOf(value);
+			}
+
+			@Override
+			public Long read(@Nullable INBT tag, @Nullable Long current)
+			{
+				return tag instanceof NumberNBT ? ((NumberNBT) tag).getAsLong() : 0L;
+			}
+
+			@Override
+			public void write(PacketBuffer buffer, Long value)
+			{
+				buffer.writeVarLong(value);
+			}
+
+			@Override
+			public Long read(PacketBuffer buffer, @Nullable Long current)
+			{
+				return buffer.readVarLong();
+			}
+
+			@Override
+			public long fingerprint(Long value)
+			{
+				return value;
+			}
+		});
+		register(Float.class, new SyncCodec<Float>()
+		{
+			@Override
+			public INBT write(Float value)
+			{
+				return FloatNBT.valueOf(value);
+			}
+
+			@Override
+			public Float read(@Nullable INBT tag, @Nullable Float current)
+			{
+				return tag instanceof NumberNBT ? ((NumberNBT) tag).getAsFloat() : 0F;
+			}
+
+			@Override
+			public void write(PacketBuffer buffer, Float value)
+			{
+				buffer.writeFloat(value);
+			}
+
+			@Override
+			public Float read(PacketBuffer buffer, @Nullable Float current)
+			{
+				return buffer.readFloat();
+			}
+
+			@Override
+			public long fingerprint(Float value)
+			{
+				return Float.floatToRawIntBits(value);
+			}
+		});
+		register(Double.class, new SyncCodec<Double>()
+		{
+			@Override
+			public INBT write(Double value)
+			{
+				return DoubleNBT.valueOf(value);
+			}
+
+			@Override
+			public Double read(@Nullable INBT tag, @Nullable Double current)
+			{
+				return tag instanceof NumberNBT ? ((NumberNBT) tag).getAsDouble() : 0D;
+			}
+
+			@Override
+			public void write(PacketBuffer buffer, Double value)
+			{
+				buffer.writeDouble(value);
+			}
+
+			@Override
+			public Double read(PacketBuffer buffer, @Nullable Double current)
+			{
+				return buffer.readDouble();
+			}
+
+			@Override
+			public long fingerprint(Double value)
+			{
+				return Double.doubleToRawLongBits(value);
+			}
+		});
+		register(Short.class, new SyncCodec<Short>()
+		{
+			@Override
+			public INBT write(Short value)
+			{
+				return ShortNBT.valueOf(value);
+			}
+
+			@Override
+			public Short read(@Nullable INBT tag, @Nullable Short current)
+			{
+				return tag instanceof NumberNBT ? ((NumberNBT) tag).getAsShort() : 0;
+			}
+
+			@Override
+			public void write(PacketBuffer buffer, Short value)
+			{
+				buffer.writeShort(value);
+			}
+
+			@Override
+			public Short read(PacketBuffer buffer, @Nullable Short current)
+			{
+				return buffer.readShort();
+			}
+
+			@Override
+			public long fingerprint(Short value)
+			{
+				return value;
+			}
+		});
+		register(Byte.class, new SyncCodec<Byte>()
+		{
+			@Override
+			public INBT write(Byte value)
+			{
+				return ByteNBT.valueOf(value);
+			}
+
+			@Override
+			public Byte read(@Nullable INBT tag, @Nullable Byte current)
+			{
+				return tag instanceof NumberNBT ? ((NumberNBT) tag).getAsByte() : 0;
+			}
+
+			@Override
+			public void write(PacketBuffer buffer, Byte value)
+			{
+				buffer.writeByte(value);
+			}
+
+			@Override
+			public Byte read(PacketBuffer buffer, @Nullable Byte current)
+			{
+				return buffer.readByte();
+			}
+
+			@Override
+			public long fingerprint(Byte value)
+			{
+				return value;
+			}
+		});
+		register(Boolean.class, new SyncCodec<Boolean>()
+		{
+			@Override
+			public INBT write(Boolean value)
+			{
+				return ByteNBT.valueOf(value);
+			}
+
+			@Override
+			public Boolean read(@Nullable INBT tag, @Nullable Boolean current)
+			{
+				return tag instanceof NumberNBT && ((NumberNBT) tag).getAsByte() != 0;
+			}
+
+			@Override
+			public void write(PacketBuffer buffer, Boolean value)
+			{
+				buffer.writeBoolean(value);
+			}
+
+			@Override
+			public Boolean read(PacketBuffer buffer, @Nullable Boolean current)
+			{
+				return buffer.readBoolean();
+			}
+
+			@Override
+			public long fingerprint(Boolean value)
+			{
+				return value ? 1 : 0;
+			}
+		});
+		register(String.class, new SyncCodec<String>()
+		{
+			@Override
+			public INBT write(String value)
+			{
+				return StringNBT.valueOf(value);
+			}
+
+			@Override
+			public String read(@Nullable INBT tag, @Nullable String current)
+			{
+				return tag == null ? "" : tag.getAsString();
+			}
+
+			@Override
+			public void write(PacketBuffer buffer, String value)
+			{
+				buffer.writeUtf(value);
+			}
+
+			@Override
+			public String read(PacketBuffer buffer, @Nullable String current)
+			{
+				return buffer.readUtf();
+			}
+
+			@Override
+			public long fingerprint(String value)
+			{
+				return mix(value.length(), value.hashCode());
+			}
+		});
+		register(INBT.class, new SyncCodec<INBT>()
+		{
+			@Override
+			public INBT write(INBT value)
+			{
+				// the tag may be written later, while the field keeps changing
+				return value.copy();
+			}
+
+			@Override
+			public INBT read(@Nullable INBT tag, @Nullable INBT current)
+			{
+				return tag;
+			}
+		});
+		registerRaw(INBTSerializable.class, new SyncCodec<INBTSerializable<INBT>>()
+		{
+			@Override
+			public INBT write(INBTSerializable<INBT> value)
+			{
+				return value.serializeNBT();
+			}
+
+			@Override
+			public INBTSerializable<INBT> read(@Nullable INBT tag, @Nullable INBTSerializable<INBT> current)
+			{
+				if (tag != null && current != null)
+				{
+					current.deserializeNBT(tag);
+				}
+				return current;
+			}
+		});
+		registerRaw(LazyOptional.class, new SyncCodec<LazyOptional<INBTSerializable<INBT>>>()
+		{
+			@Nullable
+			@Override
+			public INBT write(LazyOptional<INBTSerializable<INBT>> value)
+			{
+				return value.map(INBTSerializable::serializeNBT).orElse(null);
+			}
+
+			@Override
+			public LazyOptional<INBTSerializable<INBT>> read(
+					@Nullable INBT tag,
+					@Nullable LazyOptional<INBTSerializable<INBT>> current
+			)
+			{
+				if (tag != null && current != null)
+				{
+					current.ifPresent(serializable -> serializable.deserializeNBT(tag));
+				}
+				return current;
+			}
+		});
+		register(int[].class, new SyncCodec<int[]>()
+		{
+			@Override
+			public INBT write(int[] value)
+			{
+				// the tag keeps the array, which may change before the tag is written
+				return new IntArrayNBT(value.clone());
+			}
+
+			@Override
+			public int[] read(@Nullable INBT tag, @Nullable int[] current)
+			{
+				return tag instanceof IntArrayNBT ? copyInto(((IntArrayNBT) tag).getAsIntArray(), current) : current;
+			}
+
+			@Override
+			public void write(PacketBuffer buffer, int[] value)
+			{
+				buffer.writeVarIntArray(value);
+			}
+
+			@Override
+			public int[] read(PacketBuffer buffer, @Nullable int[] current)
+			{
+				return copyInto(buffer.readVarIntArray(), current);
+			}
+
+			@Override
+			public long fingerprint(int[] value)
+			{
+				long hash = value.length;
+				for (int element : value)
+				{
+					hash = mix(hash, element);
+				}
+				return hash;
+			}
+		});
+		register(long[].class, new SyncCodec<long[]>()
+		{
+			@Override
+			public INBT write(long[] value)
+			{
+				return new LongArrayNBT(value.clone());
+			}
+
+			@Override
+			public long[] read(@Nullable INBT tag, @Nullable long[] current)
+			{
+				if (!(tag instanceof LongArrayNBT))
+				{
+					return current;
+				}
+				long[] array = ((LongArrayNBT) tag).getAsLongArray();
+				if (current != null && current.length == array.length)
+				{
+					System.arraycopy(array, 0, current, 0, array.length);
+					return current;
+				}
+				return array.clone();
+			}
+
+			@Override
+			public void write(PacketBuffer buffer, long[] value)
+			{
+				buffer.writeLongArray(value);
+			}
+
+			@Override
+			public long[] read(PacketBuffer buffer, @Nullable long[] current)
+			{
+				// reads into current if the length matches
+				return buffer.readLongArray(current);
+			}
+
+			@Override
+			public long fingerprint(long[] value)
+			{
+				long hash = value.length;
+				for (long element : value)
+				{
+					hash = mix(hash, element);
+				}
+				return hash;
+			}
+		});
+		register(BitSet.class, new SyncCodec<BitSet>()
+		{
+			@Override
+			public INBT write(BitSet value)
+			{
+				return new LongArrayNBT(value.toLongArray());
+			}
+
+			@Override
+			public BitSet read(@Nullable INBT tag, @Nullable BitSet current)
+			{
+				if (!(tag instanceof LongArrayNBT))
+				{
+					return current;
+				}
+				return BitSetNBTWrapper.readInto(current == null ? new BitSet() : current, ((LongArrayNBT) tag).getAsLongArray());
+			}
+
+			@Override
+			public void write(PacketBuffer buffer, BitSet value)
+			{
+				buffer.writeLongArray(value.toLongArray());
+			}
+
+			@Override
+			public BitSet read(PacketBuffer buffer, @Nullable BitSet current)
+			{
+				return BitSetNBTWrapper.readInto(current == null ? new BitSet() : current, buffer.readLongArray(null));
+			}
+
+			@Override
+			public long fingerprint(BitSet value)
+			{
+				return mix(value.cardinality(), value.hashCode());
+			}
+		});
+		register(EnergyBuffer.class, new SyncCodec<EnergyBuffer>()
+		{
+			@Override
+			public INBT write(EnergyBuffer value)
+			{
+				return value.serializeNBT();
+			}
+
+			@Override
+			public EnergyBuffer read(@Nullable INBT tag, @Nullable EnergyBuffer current)
+			{
+				if (tag instanceof CompoundNBT && current != null)
+				{
+					current.deserializeNBT((CompoundNBT) tag);
+				}
+				return current;
+			}
+
+			@Override
+			public void write(PacketBuffer buffer, EnergyBuffer value)
+			{
+				buffer.writeVarLong(value.getEnergy());
+				buffer.writeVarLong(value.getCapacity());
+				buffer.writeVarLong(value.getMaxReceive());
+				buffer.writeVarLong(value.getMaxExtract());
+			}
+
+			@Override
+			public EnergyBuffer read(PacketBuffer buffer, @Nullable EnergyBuffer current)
+			{
+				EnergyBuffer energy = current == null ? new EnergyBuffer(0) : current;
+				energy.load(buffer.readVarLong(), buffer.readVarLong(), buffer.readVarLong(), buffer.readVarLong());
+				return energy;
+			}
+
+			@Override
+			public long fingerprint(EnergyBuffer value)
+			{
+				return mix(mix(mix(value.getEnergy(), value.getCapacity()), value.getMaxReceive()), value.getMaxExtract());
+			}
+		});
+		register(ItemStack.class, compound(ItemStack::of, (tag, stack) -> stack.save(tag),
+				stack -> mix(mix(System.identityHashCode(stack.getItem()), stack.getCount()), Objects.hashCode(stack.getTag()))));
+		register(FluidStack.class, compound(FluidStack::loadFluidStackFromNBT, (tag, stack) -> stack.writeToNBT(tag),
+				stack -> mix(mix(System.identityHashCode(stack.getFluid()), stack.getAmount()), Objects.hashCode(stack.getTag()))));
+		register(BlockPos.class, compound(NBTUtil::readBlockPos, (tag, pos) -> tag.merge(NBTUtil.writeBlockPos(pos)),
+				BlockPos::asLong));
+	}
+
+	private SyncCodecs()
+	{
+	}
+
+	/**
+	 * Registers a codec for the given type and its subtypes, replacing any codec registered for
+	 * exactly this type.
+	 *
+	 * @param type  the type to register the codec for
+	 * @param codec the codec
+	 */
+	public static <T> void register(Class<T> type, SyncCodec<T> codec)
+	{
+		registerRaw(type, codec);
+	}
+
+	/**
+	 * Registers a codec for a generic type, for which no class of the full type exists.
+	 */
+	private static void registerRaw(Class<?> type, SyncCodec<?> codec)
+	{
+		CODECS.put(type, codec);
+		RESOLVED.clear();
+	}
+
+	/**
+	 * Creates a codec which stores values in a compound tag.
+	 *
+	 * @param loader reads a value from the compound
+	 * @param saver  writes a value to the compound
+	 * @return a codec using the given functions
+	 */
+	public static <T> SyncCodec<T> compound(Function<CompoundNBT, T> loader, BiConsumer<CompoundNBT, T> saver)
+	{
+		return compound(loader, saver, value -> 0);
+	}
+
+	/**
+	 * Creates a codec which stores values in a compound tag, with a fingerprint for change detection.
+	 *
+	 * @param loader      reads a value from the compound
+	 * @param saver       writes a value to the compound
+	 * @param fingerprint computes a cheap fingerprint of a value, see {@link SyncCodec#fingerprint(Object)}
+	 * @return a codec using the given functions
+	 */
+	public static <T> SyncCodec<T> compound(
+			Function<CompoundNBT, T> loader,
+			BiConsumer<CompoundNBT, T> saver,
+			ToLongFunction<T> fingerprint
+	)
+	{
+		return new SyncCodec<T>()
+		{
+			@Override
+			public INBT write(T value)
+			{
+				CompoundNBT tag = new CompoundNBT();
+				saver.accept(tag, value);
+				return tag;
+			}
+
+			@Override
+			public T read(@Nullable INBT tag, @Nullable T current)
+			{
+				return loader.apply(tag instanceof CompoundNBT ? (CompoundNBT) tag : new CompoundNBT());
+			}
+
+			@Override
+			public long fingerprint(T value)
+			{
+				return fingerprint.applyAsLong(value);
+			}
+		};
+	}
+
+	/**
+	 * Gets the codec for the given type. Primitive types use the codec of their boxed type.
+	 *
+	 * @param type the type to get the codec for
+	 * @return the codec for {@code type}, or {@code null} if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	@Nullable
+	public static <T> SyncCodec<T> get(Class<T> type)
+	{
+		return (SyncCodec<T>) RESOLVED.computeIfAbsent(type, t -> Optional.ofNullable(resolve(t))).orElse(null);
+	}
+
+	@Nullable
+	private static SyncCodec<?> resolve(Class<?> type)
+	{
+		Class<?> boxed = box(type);
+		for (Class<?> clazz = boxed; clazz != null; clazz = clazz.getSuperclass())
+		{
+			SyncCodec<?> codec = CODECS.get(clazz);
+			if (codec != null)
+			{
+				return codec;
+			}
+		}
+		// breadth first, so interfaces closer to the type win
+		Deque<Class<?>> queue = new ArrayDeque<>();
+		Set<Class<?>> visited = new HashSet<>();
+		for (Class<?> clazz = boxed; clazz != null; clazz = clazz.getSuperclass())
+		{
+			Collections.addAll(queue, clazz.getInterfaces());
+		}
+		while (!queue.isEmpty())
+		{
+			Class<?> clazz = queue.poll();
+			if (visited.add(clazz))
+			{
+				SyncCodec<?> codec = CODECS.get(clazz);
+				if (codec != null)
+				{
+					return codec;
+				}
+				Collections.addAll(queue, clazz.getInterfaces());
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Combines a fingerprint with another value, for {@link SyncCodec#fingerprint(Object)}.
+	 *
+	 * @param hash  the fingerprint so far
+	 * @param value the value to add
+	 * @return the combined fingerprint
+	 */
+	public static long mix(long hash, long value)
+	{
+		return (hash ^ value) * 0x9E3779B97F4A7C15L + 0x632BE59BD9B4E019L;
+	}
+
+	/**
+	 * Copies the read array into the current one if they have the same length, so the field keeps its array.
+	 */
+	private static int[] copyInto(int[] array, @Nullable int[] current)
+	{
+		if (current != null && current.length == array.length)
+		{
+			System.arraycopy(array, 0, current, 0, array.length);
+			return current;
+		}
+		return array.clone();
+	}
+
+	private static Class<?> box(Class<?> type)
+	{
+		if (!type.isPrimitive())
+		{
+			return type;
+		}
+		return type == int.class ? Integer.class : type == long.class ? Long.class :
+				type == float.class ? Float.class : type == double.class ? Double.class :
+						type == short.class ? Short.class : type == byte.class ? Byte.class :
+								type == boolean.class ? Boolean.class : type == char.class ? Character.class :
+										Void.class;
+	}
+
+	/**
+	 * Writes an NBT tag of any type to the buffer. Unlike {@link PacketBuffer#writeNbt(CompoundNBT)}
+	 * this doesn't require the tag to be wrapped in a compound.
+	 *
+	 * @param buffer the buffer to write to
+	 * @param tag    the tag to write, may be {@code null}
+	 */
+	public static void writeTag(PacketBuffer buffer, @Nullable INBT tag)
+	{
+		if (tag == null)
+		{
+			buffer.writeByte(0);
+			return;
+		}
+		buffer.writeByte(tag.getId());
+		try
+		{
+			tag.write(new ByteBufOutputStream(buffer));
+		} catch (IOException ex)
+		{
+			throw new EncoderException(ex);
+		}
+	}
+
+	/**
+	 * Reads a tag written by {@link #writeTag(PacketBuffer, INBT)}.
+	 *
+	 * @param buffer the buffer to read from
+	 * @return the read tag, may be {@code null}
+	 */
+	@Nullable
+	public static INBT readTag(PacketBuffer buffer)
+	{
+		byte id = buffer.readByte();
+		if (id == 0)
+		{
+			return null;
+		}
+		try
+		{
+			return NBTTypes.getType(id).load(new ByteBufInputStream(buffer), 0, NBTSizeTracker.UNLIMITED);
+		} catch (IOException ex)
+		{
+			throw new DecoderException(ex);
+		}
+	}
+}
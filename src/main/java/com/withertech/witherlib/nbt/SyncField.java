@@ -0,0 +1,459 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.withertech.witherlib.nbt;
+
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.nbt.INBT;
+import net.minecraft.network.PacketBuffer;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * A field marked with {@link SyncVariable} whose accessors have been resolved up front. The
+ * fields of a class are scanned once and cached, so reading and writing them doesn't need any
+ * reflection lookups or annotation scans.
+ *
+ * @author Witherking25
+ */
+public final class SyncField
+{
+	private static final ClassValue<SyncField[]> DECLARED_FIELDS = new ClassValue<SyncField[]>()
+	{
+		@Override
+		protected SyncField[] computeValue(Class<?> type)
+		{
+			return scan(type);
+		}
+	};
+
+	private final Field field;
+	private final String name;
+	private final boolean onLoad;
+	private final boolean onSave;
+	private final boolean onPacket;
+	private final Writer<CompoundNBT> writer;
+	private final Reader<CompoundNBT> reader;
+	private final Writer<PacketBuffer> bufferWriter;
+	private final Reader<PacketBuffer> bufferReader;
+	private final Snapshot snapshot;
+
+	private SyncField(
+			Field field,
+			SyncVariable sync,
+			Writer<CompoundNBT> writer,
+			Reader<CompoundNBT> reader,
+			Writer<PacketBuffer> bufferWriter,
+			Reader<PacketBuffer> bufferReader,
+			Snapshot snapshot
+	)
+	{
+		this.field = field;
+		this.name = sync.name();
+		this.onLoad = sync.onLoad();
+		this.onSave = sync.onSave();
+		this.onPacket = sync.onPacket();
+		this.writer = writer;
+		this.reader = reader;
+		this.bufferWriter = bufferWriter;
+		this.bufferReader = bufferReader;
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * Gets the sync fields declared by the given class. The result is computed once per class.
+	 *
+	 * @param clazz the class to get the fields of
+	 * @return the fields declared by {@code clazz} marked with {@link SyncVariable}
+	 */
+	public static SyncField[] getDeclaredFields(Class<?> clazz)
+	{
+		return DECLARED_FIELDS.get(clazz);
+	}
+
+	private static SyncField[] scan(Class<?> clazz)
+	{
+		List<SyncField> fields = new ArrayList<>();
+		for (Field field : clazz.getDeclaredFields())
+		{
+			SyncVariable sync = field.getAnnotation(SyncVariable.class);
+			if (sync != null)
+			{
+				try
+				{
+					fields.add(create(field, sync));
+				} catch (IllegalAccessException | NoSuchMethodException ex)
+				{
+					throw new IllegalStateException("Failed to resolve sync variable " + field, ex);
+				}
+			}
+		}
+		return fields.toArray(new SyncField[0]);
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static SyncField create(Field field, SyncVariable sync)
+			throws IllegalAccessException, NoSuchMethodException
+	{
+		field.setAccessible(true);
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		MethodHandle getter = lookup.unreflectGetter(field);
+		MethodHandle setter = Modifier.isFinal(field.getModifiers()) ?
+				lookup.findVirtual(Field.class, "set", methodType(void.class, Object.class, Object.class))
+						.bindTo(field) :
+				lookup.unreflectSetter(field);
+		Class<?> type = field.getType();
+		String name = sync.name();
+
+		//noinspection ChainOfInstanceofChecks
+		if (type == int.class)
+		{
+			MethodHandle get = getter.asType(methodType(int.class, Object.class));
+			MethodHandle set = setter.asType(methodType(void.class, Object.class, int.class));
+			return new SyncField(field, sync,
+					(obj, tags) -> tags.putInt(name, (int) get.invokeExact(obj)),
+					(obj, tags) -> { set.invokeExact(obj, tags.getInt(name)); },
+					(obj, buffer) -> buffer.writeVarInt((int) get.invokeExact(obj)),
+					(obj, buffer) -> { set.invokeExact(obj, buffer.readVarInt()); },
+					obj -> (int) get.invokeExact(obj));
+		} else if (type == float.class)
+		{
+			MethodHandle get = getter.asType(methodType(float.class, Object.class));
+			MethodHandle set = setter.asType(methodType(void.class, Object.class, float.class));
+			return new SyncField(field, sync,
+					(obj, tags) -> tags.putFloat(name, (float) get.invokeExact(obj)),
+					(obj, tags) -> { set.invokeExact(obj, tags.getFloat(name)); },
+					(obj, buffer) -> buffer.writeFloat((float) get.invokeExact(obj)),
+					(obj, buffer) -> { set.invokeExact(obj, buffer.readFloat()); },
+					obj -> Float.floatToRawIntBits((float) get.invokeExact(obj)));
+		} else if (type == String.class)
+		{
+			MethodHandle get = getter.asType(methodType(String.class, Object.class));
+			MethodHandle set = setter.asType(methodType(void.class, Object.class, String.class));
+			return new SyncField(field, sync,
+					(obj, tags) -> tags.putString(name, (String) get.invokeExact(obj)),
+					(obj, tags) -> { set.invokeExact(obj, tags.getString(name)); },
+					(obj, buffer) -> buffer.writeUtf((String) get.invokeExact(obj)),
+					(obj, buffer) -> { set.invokeExact(obj, buffer.readUtf()); },
+					obj ->
+					{
+						String value = (String) get.invokeExact(obj);
+						return value == null ? 0 : SyncCodecs.mix(value.length(), value.hashCode());
+					});
+		} else if (type == boolean.class)
+		{
+			MethodHandle get = getter.asType(methodType(boolean.class, Object.class));
+			MethodHandle set = setter.asType(methodType(void.class, Object.class, boolean.class));
+			return new SyncField(field, sync,
+					(obj, tags) -> tags.putBoolean(name, (boolean) get.invokeExact(obj)),
+					(obj, tags) -> { set.invokeExact(obj, tags.getBoolean(name)); },
+					(obj, buffer) -> buffer.writeBoolean((boolean) get.invokeExact(obj)),
+					(obj, buffer) -> { set.invokeExact(obj, buffer.readBoolean()); },
+					obj -> (boolean) get.invokeExact(obj) ? 1 : 0);
+		} else if (type == double.class)
+		{
+			MethodHandle get = getter.asType(methodType(double.class, Object.class));
+			MethodHandle set = setter.asType(methodType(void.class, Object.class, double.class));
+			return new SyncField(field, sync,
+					(obj, tags) -> tags.putDouble(name, (double) get.invokeExact(obj)),
+					(obj, tags) -> { set.invokeExact(obj, tags.getDouble(name)); },
+					(obj, buffer) -> buffer.writeDouble((double) get.invokeExact(obj)),
+					(obj, buffer) -> { set.invokeExact(obj, buffer.readDouble()); },
+					obj -> Double.doubleToRawLongBits((double) get.invokeExact(obj)));
+		} else if (type == long.class)
+		{
+			MethodHandle get = getter.asType(methodType(long.class, Object.class));
+			MethodHandle set = setter.asType(methodType(void.class, Object.class, long.class));
+			return new SyncField(field, sync,
+					(obj, tags) -> tags.putLong(name, (long) get.invokeExact(obj)),
+					(obj, tags) -> { set.invokeExact(obj, tags.getLong(name)); },
+					(obj, buffer) -> buffer.writeVarLong((long) get.invokeExact(obj)),
+					(obj, buffer) -> { set.invokeExact(obj, buffer.readVarLong()); },
+					obj -> (long) get.invokeExact(obj));
+		} else if (type == short.class)
+		{
+			MethodHandle get = getter.asType(methodType(short.class, Object.class));
+			MethodHandle set = setter.asType(methodType(void.class, Object.class, short.class));
+			return new SyncField(field, sync,
+					(obj, tags) -> tags.putShort(name, (short) get.invokeExact(obj)),
+					(obj, tags) -> { set.invokeExact(obj, tags.getShort(name)); },
+					(obj, buffer) -> buffer.writeShort((short) get.invokeExact(obj)),
+					(obj, buffer) -> { set.invokeExact(obj, buffer.readShort()); },
+					obj -> (short) get.invokeExact(obj));
+		} else if (type == byte.class)
+		{
+			MethodHandle get = getter.asType(methodType(byte.class, Object.class));
+			MethodHandle set = setter.asType(methodType(void.class, Object.class, byte.class));
+			return new SyncField(field, sync,
+					(obj, tags) -> tags.putByte(name, (byte) get.invokeExact(obj)),
+					(obj, tags) -> { set.invokeExact(obj, tags.getByte(name)); },
+					(obj, buffer) -> buffer.writeByte((byte) get.invokeExact(obj)),
+					(obj, buffer) -> { set.invokeExact(obj, buffer.readByte()); },
+					obj -> (byte) get.invokeExact(obj));
+		}
+
+		// Codecs may be registered after the field was first scanned, so look them up when used
+		MethodHandle get = getter.asType(methodType(Object.class, Object.class));
+		MethodHandle set = setter.asType(methodType(void.class, Object.class, Object.class));
+		CodecHolder codec = new CodecHolder(type);
+		return new SyncField(field, sync,
+				(obj, tags) ->
+				{
+					Object value = get.invokeExact(obj);
+					INBT tag = value == null ? null : codec.get("write", "to").write(value);
+					if (tag != null)
+					{
+						tags.put(name, tag);
+					}
+				},
+				(obj, tags) ->
+				{
+					Object current = get.invokeExact(obj);
+					Object value = codec.get("read", "from").read(tags.get(name), current);
+					if (value != current)
+					{
+						set.invokeExact(obj, value);
+					}
+				},
+				(obj, buffer) ->
+				{
+					Object value = get.invokeExact(obj);
+					buffer.writeBoolean(value != null);
+					if (value != null)
+					{
+						codec.get("write", "to").write(buffer, value);
+					}
+				},
+				(obj, buffer) ->
+				{
+					Object current = get.invokeExact(obj);
+					Object value = buffer.readBoolean() ? codec.get("read", "from").read(buffer, current) : null;
+					if (value != current)
+					{
+						set.invokeExact(obj, value);
+					}
+				},
+				obj ->
+				{
+					Object value = get.invokeExact(obj);
+					return value == null ? 0 : codec.get("fingerprint", "for").fingerprint(value);
+				});
+	}
+
+	/**
+	 * Looks up the codec of a field when it is used. {@link SyncCodecs#get(Class)} is memoized and reset when a
+	 * codec is registered, so a more specific codec registered later is picked up by fields already in use.
+	 */
+	private static class CodecHolder
+	{
+		private final Class<?> type;
+
+		private CodecHolder(Class<?> type)
+		{
+			this.type = type;
+		}
+
+		@SuppressWarnings("unchecked")
+		private SyncCodec<Object> get(String action, String preposition)
+		{
+			SyncCodec<Object> codec = (SyncCodec<Object>) SyncCodecs.get(this.type);
+			if (codec == null)
+			{
+				throw new IllegalArgumentException("Don't know how to " + action + " type " + this.type + " " +
+						preposition + " NBT!");
+			}
+			return codec;
+		}
+	}
+
+	/**
+	 * @return the name used as NBT key for this field
+	 */
+	public String getName()
+	{
+		return this.name;
+	}
+
+	/**
+	 * @return the underlying field
+	 */
+	public Field getField()
+	{
+		return this.field;
+	}
+
+	public boolean isOnLoad()
+	{
+		return this.onLoad;
+	}
+
+	public boolean isOnSave()
+	{
+		return this.onSave;
+	}
+
+	public boolean isOnPacket()
+	{
+		return this.onPacket;
+	}
+
+	/**
+	 * Checks whether this field should be written for the given sync type.
+	 *
+	 * @param syncType the sync type (WRITE or PACKET)
+	 * @return {@code true} if the field should be written
+	 */
+	public boolean shouldWrite(SyncVariable.Type syncType)
+	{
+		return syncType == SyncVariable.Type.WRITE && this.onSave
+				|| syncType == SyncVariable.Type.PACKET && this.onPacket;
+	}
+
+	/**
+	 * Writes the value of this field in {@code obj} to {@code tags}.
+	 *
+	 * @param obj  the object holding the field
+	 * @param tags the NBT to write to
+	 */
+	public void write(Object obj, CompoundNBT tags)
+	{
+		try
+		{
+			this.writer.write(obj, tags);
+		} catch (IllegalArgumentException ex)
+		{
+			ex.printStackTrace();
+		} catch (RuntimeException | Error ex)
+		{
+			throw ex;
+		} catch (Throwable ex)
+		{
+			throw new RuntimeException(ex);
+		}
+	}
+
+	/**
+	 * Reads the value of this field in {@code obj} from {@code tags}.
+	 *
+	 * @param obj  the object holding the field
+	 * @param tags the NBT to read from
+	 */
+	public void read(Object obj, CompoundNBT tags)
+	{
+		try
+		{
+			this.reader.read(obj, tags);
+		} catch (IllegalArgumentException ex)
+		{
+			ex.printStackTrace();
+		} catch (RuntimeException | Error ex)
+		{
+			throw ex;
+		} catch (Throwable ex)
+		{
+			throw new RuntimeException(ex);
+		}
+	}
+
+	/**
+	 * Writes the value of this field in {@code obj} to {@code buffer}, without any key.
+	 *
+	 * @param obj    the object holding the field
+	 * @param buffer the buffer to write to
+	 */
+	public void write(Object obj, PacketBuffer buffer)
+	{
+		try
+		{
+			this.bufferWriter.write(obj, buffer);
+		} catch (RuntimeException | Error ex)
+		{
+			throw ex;
+		} catch (Throwable ex)
+		{
+			throw new RuntimeException(ex);
+		}
+	}
+
+	/**
+	 * Reads the value of this field in {@code obj} from {@code buffer}.
+	 *
+	 * @param obj    the object holding the field
+	 * @param buffer the buffer to read from
+	 */
+	public void read(Object obj, PacketBuffer buffer)
+	{
+		try
+		{
+			this.bufferReader.read(obj, buffer);
+		} catch (RuntimeException | Error ex)
+		{
+			throw ex;
+		} catch (Throwable ex)
+		{
+			throw new RuntimeException(ex);
+		}
+	}
+
+	/**
+	 * Gets a fingerprint of the value of this field in {@code obj}, used to detect changes. Primitive
+	 * values are returned as is, other values get the {@link SyncCodec#fingerprint(Object) fingerprint}
+	 * of their codec. Nothing is serialised or allocated.
+	 *
+	 * @param obj the object holding the field
+	 * @return the fingerprint of the value
+	 */
+	public long snapshot(Object obj)
+	{
+		try
+		{
+			return this.snapshot.snapshot(obj);
+		} catch (RuntimeException | Error ex)
+		{
+			throw ex;
+		} catch (Throwable ex)
+		{
+			throw new RuntimeException(ex);
+		}
+	}
+
+	@FunctionalInterface
+	private interface Snapshot
+	{
+		long snapshot(Object obj) throws Throwable;
+	}
+
+	@FunctionalInterface
+	private interface Writer<D>
+	{
+		void write(Object obj, D data) throws Throwable;
+	}
+
+	@FunctionalInterface
+	private interface Reader<D>
+	{
+		void read(Object obj, D data) throws Throwable;
+	}
+}
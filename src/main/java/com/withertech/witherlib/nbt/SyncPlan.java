@@ -0,0 +1,147 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.withertech.witherlib.nbt;
+
+import net.minecraft.nbt.CompoundNBT;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * All {@link SyncVariable} fields of a class, including the ones declared by its super classes,
+ * in the order they are synced. Plans are built once per class, so reading and writing an object
+ * is a single pass over a precomputed array.
+ *
+ * @author Witherking25
+ */
+public final class SyncPlan
+{
+	private static final ClassValue<SyncPlan> PLANS = new ClassValue<SyncPlan>()
+	{
+		@Override
+		protected SyncPlan computeValue(Class<?> type)
+		{
+			return new SyncPlan(type);
+		}
+	};
+
+	private static final SyncField[] NONE = new SyncField[0];
+
+	private final SyncField[] fields;
+	private final SyncField[] saveFields;
+	private final SyncField[] packetFields;
+	private final Map<String, Integer> indices = new HashMap<>();
+
+	private SyncPlan(Class<?> type)
+	{
+		// super classes first, so a field's index doesn't depend on the subclass
+		List<SyncField> fields = new ArrayList<>();
+		for (Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass())
+		{
+			fields.addAll(0, Arrays.asList(SyncField.getDeclaredFields(clazz)));
+		}
+		this.fields = fields.toArray(new SyncField[0]);
+		this.saveFields = fields.stream().filter(SyncField::isOnSave).toArray(SyncField[]::new);
+		this.packetFields = fields.stream().filter(SyncField::isOnPacket).toArray(SyncField[]::new);
+		for (int index = 0; index < this.fields.length; index++)
+		{
+			this.indices.putIfAbsent(this.fields[index].getName(), index);
+		}
+	}
+
+	/**
+	 * Gets the sync plan of the given class. The result is computed once per class.
+	 *
+	 * @param clazz the class to get the plan of
+	 * @return the plan of {@code clazz}
+	 */
+	public static SyncPlan of(Class<?> clazz)
+	{
+		return PLANS.get(clazz);
+	}
+
+	/**
+	 * @return all sync fields, super class fields first
+	 */
+	public List<SyncField> getFields()
+	{
+		return Collections.unmodifiableList(Arrays.asList(this.fields));
+	}
+
+	public int size()
+	{
+		return this.fields.length;
+	}
+
+	public SyncField getField(int index)
+	{
+		return this.fields[index];
+	}
+
+	/**
+	 * Gets the index of the field with the given name, or {@code -1} if there is none.
+	 *
+	 * @param name the {@link SyncVariable#name()} of the field
+	 * @return the index of the field
+	 */
+	public int indexOf(String name)
+	{
+		Integer index = this.indices.get(name);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Writes the fields which should be written for the given sync type.
+	 *
+	 * @param obj      the object to write the fields of
+	 * @param tags     the NBT to save the values to
+	 * @param syncType the sync type (WRITE or PACKET)
+	 * @return the modified tags
+	 */
+	public CompoundNBT write(Object obj, CompoundNBT tags, SyncVariable.Type syncType)
+	{
+		SyncField[] fields = syncType == SyncVariable.Type.WRITE ? this.saveFields :
+				syncType == SyncVariable.Type.PACKET ? this.packetFields : NONE;
+		for (SyncField field : fields)
+		{
+			field.write(obj, tags);
+		}
+		return tags;
+	}
+
+	/**
+	 * Reads the fields which have a value in the given NBT, other fields are left untouched.
+	 *
+	 * @param obj  the object to read the fields into
+	 * @param tags the NBT to read the values from
+	 */
+	public void read(Object obj, CompoundNBT tags)
+	{
+		for (SyncField field : this.fields)
+		{
+			if (tags.contains(field.getName()))
+			{
+				field.read(obj, tags);
+			}
+		}
+	}
+}
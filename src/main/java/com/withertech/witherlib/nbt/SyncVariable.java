@@ -18,20 +18,12 @@
 
 package com.withertech.witherlib.nbt;
 
-import com.withertech.witherlib.util.ClassUtils;
 import net.minecraft.nbt.CompoundNBT;
-import net.minecraft.nbt.INBT;
 import net.minecraft.tileentity.TileEntity;
-import net.minecraftforge.common.util.INBTSerializable;
-import net.minecraftforge.common.util.LazyOptional;
 
 import javax.annotation.Nonnull;
-import java.lang.annotation.Annotation;
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
-import java.lang.reflect.Field;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 
@@ -96,133 +88,63 @@ public @interface SyncVariable
 	 */
 	final class Helper
 	{
-		static final Map<Class<?>, NBTSerializer<?>> SERIALIZERS = new HashMap<>();
-
 		private Helper()
 		{
 		}
 
+		/**
+		 * Registers a serializer storing values of the given type in a compound tag.
+		 *
+		 * @see SyncCodecs#register(Class, SyncCodec)
+		 */
 		public static <T> void registerSerializer(
 				Class<T> clazz,
 				Function<CompoundNBT, T> loader,
 				BiConsumer<CompoundNBT, T> saver
 		)
 		{
-			SERIALIZERS.put(clazz, new NBTSerializer<T>()
-			{
-				@Override
-				public T read(CompoundNBT tags)
-				{
-					return loader.apply(tags);
-				}
-
-				@Override
-				public void write(CompoundNBT tags, T obj)
-				{
-					saver.accept(tags, obj);
-				}
-			});
+			SyncCodecs.register(clazz, SyncCodecs.compound(loader, saver));
 		}
 
 		/**
 		 * Reads sync variables for the object. This method will attempt to read a value from NBT
-		 * and assign that value for any field marked with the SyncVariable annotation.
+		 * and assign that value for any field marked with the SyncVariable annotation, including
+		 * fields declared by super classes.
 		 *
 		 * @param obj  The object with SyncVariable fields.
 		 * @param tags The NBT to read values from.
 		 */
 		public static <T> void readSyncVars(T obj, CompoundNBT tags)
 		{
-			readSyncVars(obj.getClass(), obj, tags);
+			SyncPlan.of(obj.getClass()).read(obj, tags);
 		}
 
 		/**
 		 * Reads sync variables for the object. This method will attempt to read a value from NBT
-		 * and assign that value for any field marked with the SyncVariable annotation.
+		 * and assign that value for any field marked with the SyncVariable annotation declared by
+		 * {@code clazz}. Fields without a value in {@code tags} are left untouched.
 		 *
 		 * @param clazz The class to search for fields in
 		 * @param obj   The object with SyncVariable fields.
 		 * @param tags  The NBT to read values from.
 		 */
-		@SuppressWarnings({"unchecked", "rawtypes"})
 		public static <T> void readSyncVars(@Nonnull Class<? extends T> clazz, T obj, CompoundNBT tags)
 		{
 			// Try to read from NBT for fields marked with SyncVariable.
-			for (Field field : clazz.getDeclaredFields())
+			for (SyncField field : SyncField.getDeclaredFields(clazz))
 			{
-				for (Annotation annotation : field.getDeclaredAnnotations())
+				// Partial updates only carry the fields that changed
+				if (tags.contains(field.getName()))
 				{
-					if (annotation instanceof SyncVariable)
-					{
-						SyncVariable sync = (SyncVariable) annotation;
-
-						try
-						{
-							// Set fields accessible if necessary.
-
-							if (!field.isAccessible())
-							{
-								field.setAccessible(true);
-							}
-							String name = sync.name();
-
-							//noinspection ChainOfInstanceofChecks
-							if (field.getType() == int.class)
-							{
-								field.setInt(obj, tags.getInt(name));
-							} else if (field.getType() == float.class)
-							{
-								field.setFloat(obj, tags.getFloat(name));
-							} else if (field.getType() == String.class)
-							{
-								field.set(obj, tags.getString(name));
-							} else if (field.getType() == boolean.class)
-							{
-								field.setBoolean(obj, tags.getBoolean(name));
-							} else if (field.getType() == double.class)
-							{
-								field.setDouble(obj, tags.getDouble(name));
-							} else if (field.getType() == long.class)
-							{
-								field.setLong(obj, tags.getLong(name));
-							} else if (field.getType() == short.class)
-							{
-								field.setShort(obj, tags.getShort(name));
-							} else if (field.getType() == byte.class)
-							{
-								field.setByte(obj, tags.getByte(name));
-							} else if (ClassUtils.<LazyOptional<INBTSerializable<INBT>>>castClass(LazyOptional.class).isAssignableFrom(
-									field.getType()))
-							{
-								((LazyOptional<INBTSerializable<INBT>>) field.get(obj)).ifPresent(
-										compoundNBTINBTSerializable -> compoundNBTINBTSerializable.deserializeNBT(tags.get(
-												name)));
-							} else if (ClassUtils.<INBTSerializable<INBT>>castClass(INBTSerializable.class).isAssignableFrom(
-									field.getType()))
-							{
-								((INBTSerializable<INBT>) field.get(obj)).deserializeNBT(tags.get(name));
-							} else if (SERIALIZERS.containsKey(field.getType()))
-							{
-								NBTSerializer serializer = SERIALIZERS.get(field.getType());
-								CompoundNBT compound = tags.getCompound(name);
-								field.set(obj, serializer.read(compound));
-							} else
-							{
-								throw new IllegalArgumentException("Don't know how to read type " + field.getType() +
-										" from NBT!");
-							}
-						} catch (IllegalAccessException | IllegalArgumentException ex)
-						{
-							ex.printStackTrace();
-						}
-					}
+					field.read(obj, tags);
 				}
 			}
 		}
 
 		/**
 		 * Writes sync variables for the object. This method will take the values in all fields
-		 * marked with the SyncVariable annotation and save them to NBT.
+		 * marked with the SyncVariable annotation, including fields declared by super classes, and
+		 * save them to NBT.
 		 *
 		 * @param obj      The object with SyncVariable fields.
 		 * @param tags     The NBT to save values to.
@@ -231,7 +153,7 @@ public @interface SyncVariable
 		 */
 		public static <T> CompoundNBT writeSyncVars(T obj, CompoundNBT tags, Type syncType)
 		{
-			return writeSyncVars(obj.getClass(), obj, tags, syncType);
+			return SyncPlan.of(obj.getClass()).write(obj, tags, syncType);
 		}
 
 		/**
@@ -244,7 +166,6 @@ public @interface SyncVariable
 		 * @param syncType The sync type (WRITE or PACKET).
 		 * @return The modified tags.
 		 */
-		@SuppressWarnings({"unchecked", "rawtypes"}) // from serializer
 		public static <T> CompoundNBT writeSyncVars(
 				@Nonnull Class<? extends T> clazz,
 				T obj,
@@ -252,81 +173,13 @@ public @interface SyncVariable
 				Type syncType
 		)
 		{
-
-
 			// Try to write to NBT for fields marked with SyncVariable.
-			for (Field field : clazz.getDeclaredFields())
+			for (SyncField field : SyncField.getDeclaredFields(clazz))
 			{
-				for (Annotation annotation : field.getDeclaredAnnotations())
+				// Does variable allow writing in this case?
+				if (field.shouldWrite(syncType))
 				{
-					if (annotation instanceof SyncVariable)
-					{
-						SyncVariable sync = (SyncVariable) annotation;
-
-						// Does variable allow writing in this case?
-						if (syncType == Type.WRITE && sync.onSave()
-								|| syncType == Type.PACKET && sync.onPacket())
-						{
-							try
-							{
-								// Set fields accessible if necessary.
-								if (!field.isAccessible())
-								{
-									field.setAccessible(true);
-								}
-								String name = sync.name();
-
-								//noinspection ChainOfInstanceofChecks
-								if (field.getType() == int.class)
-								{
-									tags.putInt(name, field.getInt(obj));
-								} else if (field.getType() == float.class)
-								{
-									tags.putFloat(name, field.getFloat(obj));
-								} else if (field.getType() == String.class)
-								{
-									tags.putString(name, (String) field.get(obj));
-								} else if (field.getType() == boolean.class)
-								{
-									tags.putBoolean(name, field.getBoolean(obj));
-								} else if (field.getType() == double.class)
-								{
-									tags.putDouble(name, field.getDouble(obj));
-								} else if (field.getType() == long.class)
-								{
-									tags.putLong(name, field.getLong(obj));
-								} else if (field.getType() == short.class)
-								{
-									tags.putShort(name, field.getShort(obj));
-								} else if (field.getType() == byte.class)
-								{
-									tags.putByte(name, field.getByte(obj));
-								} else if (ClassUtils.<LazyOptional<INBTSerializable<INBT>>>castClass(LazyOptional.class).isAssignableFrom(
-										field.getType()))
-								{
-									((LazyOptional<INBTSerializable<INBT>>) field.get(obj)).ifPresent(
-											compoundNBTINBTSerializable ->
-													tags.put(name, compoundNBTINBTSerializable.serializeNBT()));
-								} else if (ClassUtils.<INBTSerializable<INBT>>castClass(INBTSerializable.class).isAssignableFrom(
-										field.getType()))
-								{
-									tags.put(name, ((INBTSerializable<INBT>) field.get(obj)).serializeNBT());
-								} else if (SERIALIZERS.containsKey(field.getType()))
-								{
-									CompoundNBT compound = new CompoundNBT();
-									NBTSerializer serializer = SERIALIZERS.get(field.getType());
-									serializer.write(compound, field.get(obj));
-									tags.put(name, compound);
-								} else
-								{
-									throw new IllegalArgumentException("Don't know how to write type " + field.getType() + " to NBT!");
-								}
-							} catch (IllegalAccessException | IllegalArgumentException ex)
-							{
-								ex.printStackTrace();
-							}
-						}
-					}
+					field.write(obj, tags);
 				}
 			}
 
@@ -0,0 +1,75 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.withertech.witherlib.nbt.wrappers;
+
+import net.minecraft.nbt.LongArrayNBT;
+
+import javax.annotation.Nonnull;
+import java.util.BitSet;
+
+/**
+ * Wraps a bit set, stored as its words in a single {@link LongArrayNBT}. Deserializing reads into the
+ * current bit set.
+ */
+public class BitSetNBTWrapper extends AbstractNBTWrapper<BitSet, LongArrayNBT>
+{
+	public BitSetNBTWrapper(BitSet value)
+	{
+		super(value);
+	}
+
+	public BitSetNBTWrapper()
+	{
+		this(new BitSet());
+	}
+
+	/**
+	 * Replaces the bits of the given bit set with the given words, without allocating a new bit set.
+	 *
+	 * @param bits  the bit set to read into
+	 * @param words the words, as from {@link BitSet#toLongArray()}
+	 * @return {@code bits}
+	 */
+	public static BitSet readInto(BitSet bits, long[] words)
+	{
+		bits.clear();
+		for (int index = 0; index < words.length; index++)
+		{
+			long word = words[index];
+			while (word != 0)
+			{
+				bits.set(index * Long.SIZE + Long.numberOfTrailingZeros(word));
+				word &= word - 1;
+			}
+		}
+		return bits;
+	}
+
+	@Override
+	public LongArrayNBT serializeNBT()
+	{
+		return new LongArrayNBT(value.toLongArray());
+	}
+
+	@Override
+	public void deserializeNBT(@Nonnull LongArrayNBT nbt)
+	{
+		readInto(value, nbt.getAsLongArray());
+	}
+}
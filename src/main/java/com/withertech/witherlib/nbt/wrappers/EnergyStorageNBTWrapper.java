@@ -23,39 +23,47 @@ import net.minecraftforge.energy.EnergyStorage;
 
 import java.lang.reflect.Field;
 
+/**
+ * Wraps a Forge {@link EnergyStorage}, whose fields are only accessible through reflection.
+ * Prefer {@link com.withertech.witherlib.energy.EnergyBuffer}, which needs no reflection and stores more than
+ * {@link Integer#MAX_VALUE} energy.
+ */
 public class EnergyStorageNBTWrapper extends AbstractNBTWrapper<EnergyStorage, CompoundNBT>
 {
+	private static final Field ENERGY = findField("energy");
+	private static final Field CAPACITY = findField("capacity");
+	private static final Field MAX_RECEIVE = findField("maxReceive");
+	private static final Field MAX_EXTRACT = findField("maxExtract");
+
 	public EnergyStorageNBTWrapper(EnergyStorage value)
 	{
 		super(value);
 	}
 
+	private static Field findField(String name)
+	{
+		try
+		{
+			Field field = EnergyStorage.class.getDeclaredField(name);
+			field.setAccessible(true);
+			return field;
+		} catch (NoSuchFieldException e)
+		{
+			throw new IllegalStateException("EnergyStorage has no field '" + name + "'!", e);
+		}
+	}
+
 	@Override
 	public CompoundNBT serializeNBT()
 	{
 		CompoundNBT nbt = new CompoundNBT();
 		try
 		{
-			Field energyField = EnergyStorage.class.getDeclaredField("energy");
-			Field capacityField = EnergyStorage.class.getDeclaredField("capacity");
-			Field maxReceiveField = EnergyStorage.class.getDeclaredField("maxReceive");
-			Field maxExtractField = EnergyStorage.class.getDeclaredField("maxExtract");
-
-			energyField.setAccessible(true);
-			capacityField.setAccessible(true);
-			maxReceiveField.setAccessible(true);
-			maxExtractField.setAccessible(true);
-
-			int energy = energyField.getInt(value);
-			int capacity = capacityField.getInt(value);
-			int maxReceive = maxReceiveField.getInt(value);
-			int maxExtract = maxExtractField.getInt(value);
-
-			nbt.putInt("energy", energy);
-			nbt.putInt("capacity", capacity);
-			nbt.putInt("maxReceive", maxReceive);
-			nbt.putInt("maxExtract", maxExtract);
-		} catch (NoSuchFieldException | IllegalAccessException e)
+			nbt.putInt("energy", ENERGY.getInt(value));
+			nbt.putInt("capacity", CAPACITY.getInt(value));
+			nbt.putInt("maxReceive", MAX_RECEIVE.getInt(value));
+			nbt.putInt("maxExtract", MAX_EXTRACT.getInt(value));
+		} catch (IllegalAccessException e)
 		{
 			e.printStackTrace();
 		}
@@ -67,27 +75,11 @@ public class EnergyStorageNBTWrapper extends AbstractNBTWrapper<EnergyStorage, C
 	{
 		try
 		{
-			Field energyField = EnergyStorage.class.getDeclaredField("energy");
-			Field capacityField = EnergyStorage.class.getDeclaredField("capacity");
-			Field maxReceiveField = EnergyStorage.class.getDeclaredField("maxReceive");
-			Field maxExtractField = EnergyStorage.class.getDeclaredField("maxExtract");
-
-			energyField.setAccessible(true);
-			capacityField.setAccessible(true);
-			maxReceiveField.setAccessible(true);
-			maxExtractField.setAccessible(true);
-
-			int energy = nbt.getInt("energy");
-			int capacity = nbt.getInt("capacity");
-			int maxReceive = nbt.getInt("maxReceive");
-			int maxExtract = nbt.getInt("maxExtract");
-
-			energyField.setInt(value, energy);
-			capacityField.setInt(value, capacity);
-			maxReceiveField.setInt(value, maxReceive);
-			maxExtractField.setInt(value, maxExtract);
-
-		} catch (NoSuchFieldException | IllegalAccessException e)
+			ENERGY.setInt(value, nbt.getInt("energy"));
+			CAPACITY.setInt(value, nbt.getInt("capacity"));
+			MAX_RECEIVE.setInt(value, nbt.getInt("maxReceive"));
+			MAX_EXTRACT.setInt(value, nbt.getInt("maxExtract"));
+		} catch (IllegalAccessException e)
 		{
 			e.printStackTrace();
 		}
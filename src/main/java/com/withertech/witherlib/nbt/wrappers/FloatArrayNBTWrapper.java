@@ -0,0 +1,63 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.withertech.witherlib.nbt.wrappers;
+
+import net.minecraft.nbt.IntArrayNBT;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Wraps a float array, stored as the raw bits of the floats in a single {@link IntArrayNBT}.
+ * Deserializing copies into the current array if it has the same length.
+ */
+public class FloatArrayNBTWrapper extends AbstractNBTWrapper<float[], IntArrayNBT>
+{
+	public FloatArrayNBTWrapper(float[] value)
+	{
+		super(value);
+	}
+
+	public FloatArrayNBTWrapper(int size)
+	{
+		this(new float[size]);
+	}
+
+	@Override
+	public IntArrayNBT serializeNBT()
+	{
+		int[] bits = new int[value.length];
+		for (int index = 0; index < bits.length; index++)
+		{
+			bits[index] = Float.floatToRawIntBits(value[index]);
+		}
+		return new IntArrayNBT(bits);
+	}
+
+	@Override
+	public void deserializeNBT(@Nonnull IntArrayNBT nbt)
+	{
+		int[] bits = nbt.getAsIntArray();
+		float[] array = bits.length == value.length ? value : new float[bits.length];
+		for (int index = 0; index < bits.length; index++)
+		{
+			array[index] = Float.intBitsToFloat(bits[index]);
+		}
+		set(array);
+	}
+}
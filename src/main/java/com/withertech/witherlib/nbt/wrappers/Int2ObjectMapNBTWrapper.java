@@ -0,0 +1,101 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.withertech.witherlib.nbt.wrappers;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.nbt.IntArrayNBT;
+import net.minecraft.nbt.ListNBT;
+import net.minecraftforge.common.util.Constants;
+import net.minecraftforge.common.util.INBTSerializable;
+
+import javax.annotation.Nonnull;
+import java.util.function.Supplier;
+
+/**
+ * Wraps a map of int keys to serializable values, without boxing the keys. The keys are stored in a single
+ * {@link IntArrayNBT}. Like {@link MapNBTWrapper}, deserializing reads into the existing values of keys which
+ * are still present.
+ */
+public class Int2ObjectMapNBTWrapper<T extends INBTSerializable<CompoundNBT>> extends AbstractNBTWrapper<Int2ObjectMap<T>, CompoundNBT>
+{
+	private final Supplier<T> factory;
+
+	public Int2ObjectMapNBTWrapper(Int2ObjectMap<T> value, Supplier<T> factory)
+	{
+		super(value);
+		this.factory = factory;
+	}
+
+	public Int2ObjectMapNBTWrapper(Supplier<T> factory)
+	{
+		this(new Int2ObjectOpenHashMap<>(), factory);
+	}
+
+	@Override
+	public CompoundNBT serializeNBT()
+	{
+		int[] keys = new int[value.size()];
+		ListNBT values = new ListNBT();
+		int index = 0;
+		for (Int2ObjectMap.Entry<T> entry : value.int2ObjectEntrySet())
+		{
+			keys[index++] = entry.getIntKey();
+			values.add(entry.getValue().serializeNBT());
+		}
+		CompoundNBT nbt = new CompoundNBT();
+		nbt.put("keys", new IntArrayNBT(keys));
+		nbt.put("values", values);
+		return nbt;
+	}
+
+	@Override
+	public void deserializeNBT(@Nonnull CompoundNBT nbt)
+	{
+		int[] keys = nbt.getIntArray("keys");
+		ListNBT values = nbt.getList("values", Constants.NBT.TAG_COMPOUND);
+		int size = Math.min(keys.length, values.size());
+		if (!value.isEmpty())
+		{
+			IntSet present = new IntOpenHashSet(keys, 0, size);
+			IntIterator iterator = value.keySet().iterator();
+			while (iterator.hasNext())
+			{
+				if (!present.contains(iterator.nextInt()))
+				{
+					iterator.remove();
+				}
+			}
+		}
+		for (int index = 0; index < size; index++)
+		{
+			T objValue = value.get(keys[index]);
+			if (objValue == null)
+			{
+				objValue = factory.get();
+				value.put(keys[index], objValue);
+			}
+			objValue.deserializeNBT(values.getCompound(index));
+		}
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.withertech.witherlib.nbt.wrappers;
+
+import net.minecraft.nbt.IntArrayNBT;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Wraps an int array, stored as a single {@link IntArrayNBT}. Deserializing copies into the current array
+ * if it has the same length.
+ */
+public class IntArrayNBTWrapper extends AbstractNBTWrapper<int[], IntArrayNBT>
+{
+	public IntArrayNBTWrapper(int[] value)
+	{
+		super(value);
+	}
+
+	public IntArrayNBTWrapper(int size)
+	{
+		this(new int[size]);
+	}
+
+	@Override
+	public IntArrayNBT serializeNBT()
+	{
+		// the tag keeps the array, which may change before the tag is written
+		return new IntArrayNBT(value.clone());
+	}
+
+	@Override
+	public void deserializeNBT(@Nonnull IntArrayNBT nbt)
+	{
+		int[] array = nbt.getAsIntArray();
+		if (array.length == value.length)
+		{
+			System.arraycopy(array, 0, value, 0, array.length);
+		} else
+		{
+			set(array.clone());
+		}
+	}
+}
@@ -19,18 +19,20 @@
 package com.withertech.witherlib.nbt.wrappers;
 
 import net.minecraft.nbt.CompoundNBT;
-import net.minecraft.nbt.INBT;
 import net.minecraft.nbt.ListNBT;
 import net.minecraftforge.common.util.Constants;
 import net.minecraftforge.common.util.INBTSerializable;
 
 import javax.annotation.Nonnull;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
+/**
+ * Wraps a list of serializable elements. Deserializing reads into the existing elements of the list where
+ * possible, only creating elements from the factory for entries past the current size, so the elements'
+ * {@link INBTSerializable#deserializeNBT} must overwrite their whole state.
+ */
 public class ListNBTWrapper<T extends INBTSerializable<CompoundNBT>> extends AbstractNBTWrapper<List<T>, CompoundNBT>
 {
 	private final Supplier<T> factory;
@@ -46,20 +48,39 @@ public class ListNBTWrapper<T extends INBTSerializable<CompoundNBT>> extends Abs
 	{
 		CompoundNBT nbt = new CompoundNBT();
 		ListNBT list = new ListNBT();
-		list.addAll(value.stream().map(INBTSerializable::serializeNBT).collect(Collectors.toList()));
+		for (T element : value)
+		{
+			list.add(element.serializeNBT());
+		}
 		nbt.put("values", list);
 		return nbt;
 	}
 
 	@Override
-	public void deserializeNBT(@Nonnull CompoundNBT list)
+	public void deserializeNBT(@Nonnull CompoundNBT nbt)
 	{
-		value.clear();
-		new ArrayList<>(list.getList("values", Constants.NBT.TAG_COMPOUND)).forEach(nbt ->
+		ListNBT list = nbt.getList("values", Constants.NBT.TAG_COMPOUND);
+		int size = list.size();
+		int reused = Math.min(size, value.size());
+		for (int index = 0; index < reused; index++)
+		{
+			value.get(index).deserializeNBT(list.getCompound(index));
+		}
+		if (value.size() > size)
+		{
+			value.subList(size, value.size()).clear();
+		} else if (size > reused)
 		{
-			T value = factory.get();
-			value.deserializeNBT((CompoundNBT) nbt);
-			this.value.add(value);
-		});
+			if (value instanceof ArrayList)
+			{
+				((ArrayList<T>) value).ensureCapacity(size);
+			}
+			for (int index = reused; index < size; index++)
+			{
+				T element = factory.get();
+				element.deserializeNBT(list.getCompound(index));
+				value.add(element);
+			}
+		}
 	}
 }
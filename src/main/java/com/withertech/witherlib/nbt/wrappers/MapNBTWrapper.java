@@ -19,15 +19,18 @@
 package com.withertech.witherlib.nbt.wrappers;
 
 import net.minecraft.nbt.CompoundNBT;
-import net.minecraft.nbt.INBT;
 import net.minecraftforge.common.util.INBTSerializable;
 
 import javax.annotation.Nonnull;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.Set;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
+/**
+ * Wraps a map of serializable values. Deserializing reads into the existing values of keys which are still
+ * present, only creating values from the factory for new keys, so the values'
+ * {@link INBTSerializable#deserializeNBT} must overwrite their whole state.
+ */
 public class MapNBTWrapper<T extends INBTSerializable<CompoundNBT>> extends AbstractNBTWrapper<Map<String, T>, CompoundNBT>
 {
 	private final Supplier<T> factory;
@@ -50,12 +53,17 @@ public class MapNBTWrapper<T extends INBTSerializable<CompoundNBT>> extends Abst
 	@Override
 	public void deserializeNBT(@Nonnull CompoundNBT nbt)
 	{
-		this.value.clear();
-		nbt.getAllKeys().stream().collect(Collectors.toMap(Function.identity(), nbt::getCompound)).forEach((key, nbtValue) ->
+		Set<String> keys = nbt.getAllKeys();
+		this.value.keySet().retainAll(keys);
+		for (String key : keys)
 		{
-			T objValue = factory.get();
-			objValue.deserializeNBT(nbtValue);
-			this.value.put(key, objValue);
-		});
+			T objValue = this.value.get(key);
+			if (objValue == null)
+			{
+				objValue = factory.get();
+				this.value.put(key, objValue);
+			}
+			objValue.deserializeNBT(nbt.getCompound(key));
+		}
 	}
 }
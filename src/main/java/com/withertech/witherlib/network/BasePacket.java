@@ -55,4 +55,12 @@ public interface BasePacket
 
 	void handle(PacketContext context);
 
+	/**
+	 * Clears the data in the packet before it is reused. Only called for packets
+	 * which have been registered as pooled.
+	 */
+	default void reset()
+	{
+	}
+
 }
@@ -55,6 +55,12 @@ public abstract class BlockPosBasePacket implements BasePacket
 		this.pos = buffer.readBlockPos();
 	}
 
+	@Override
+	public void reset()
+	{
+		this.pos = null;
+	}
+
 	@Override
 	public void handle(PacketContext context)
 	{
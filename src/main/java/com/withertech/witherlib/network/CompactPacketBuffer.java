@@ -0,0 +1,87 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.withertech.witherlib.network;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.RegistryKey;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Packet buffer used by {@link PacketChannel} for batched frames which interns dimensions. The first time a dimension
+ * is written its id is sent in full, after that only a small index is sent. The table is shared by all packets in the
+ * same frame, so each dimension is only sent once per frame. Packets sent on their own don't use this buffer, since
+ * a table for a single packet would only add the index to the full id.
+ */
+public class CompactPacketBuffer extends PacketBuffer
+{
+
+	private final Map<ResourceLocation, Integer> writtenDimensions = new HashMap<>();
+	private final List<RegistryKey<World>> readDimensions = new ArrayList<>();
+
+	public CompactPacketBuffer(ByteBuf buffer)
+	{
+		super(buffer);
+	}
+
+	/**
+	 * Writes the given {@code dimension}, which will be decoded in {@link #readDimension()}.
+	 *
+	 * @param dimension dimension to write
+	 */
+	public void writeDimension(RegistryKey<World> dimension)
+	{
+		Integer index = this.writtenDimensions.get(dimension.location());
+		if (index != null)
+		{
+			this.writeVarInt(index + 1);
+			return;
+		}
+		this.writtenDimensions.put(dimension.location(), this.writtenDimensions.size());
+		this.writeVarInt(0);
+		this.writeResourceLocation(dimension.location());
+	}
+
+	/**
+	 * Reads a dimension written by {@link #writeDimension(RegistryKey)}.
+	 *
+	 * @return the read dimension
+	 */
+	public RegistryKey<World> readDimension()
+	{
+		int index = this.readVarInt();
+		if (index == 0)
+		{
+			RegistryKey<World> dimension = RegistryKey.create(Registry.DIMENSION_REGISTRY, this.readResourceLocation());
+			this.readDimensions.add(dimension);
+			return dimension;
+		}
+		if (index > this.readDimensions.size())
+		{
+			throw new IllegalStateException("Received an unknown dimension index '" + (index - 1) + "'!");
+		}
+		return this.readDimensions.get(index - 1);
+	}
+}
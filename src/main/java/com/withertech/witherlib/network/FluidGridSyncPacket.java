@@ -0,0 +1,94 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.withertech.witherlib.network;
+
+import com.withertech.witherlib.fluid.FluidGrid;
+import com.withertech.witherlib.fluid.IFluidGridNode;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraftforge.fluids.FluidStack;
+
+import java.util.List;
+
+/**
+ * Sends the combined state of a {@link FluidGrid} to the nodes of the grid in one chunk.
+ *
+ * @see IFluidGridNode#onGridStateChanged(FluidStack, long, long)
+ */
+public class FluidGridSyncPacket implements BasePacket
+{
+	private FluidStack fluid;
+	private long amount;
+	private long capacity;
+	private long[] positions;
+
+	public FluidGridSyncPacket()
+	{
+	}
+
+	public FluidGridSyncPacket(FluidStack fluid, long amount, long capacity, List<BlockPos> positions)
+	{
+		this.fluid = fluid;
+		this.amount = amount;
+		this.capacity = capacity;
+		this.positions = new long[positions.size()];
+		for (int index = 0; index < this.positions.length; index++)
+		{
+			this.positions[index] = positions.get(index).asLong();
+		}
+	}
+
+	@Override
+	public void write(PacketBuffer buffer)
+	{
+		this.fluid.writeToPacket(buffer);
+		buffer.writeVarLong(this.amount);
+		buffer.writeVarLong(this.capacity);
+		buffer.writeLongArray(this.positions);
+	}
+
+	@Override
+	public void read(PacketBuffer buffer)
+	{
+		this.fluid = FluidStack.readFromPacket(buffer);
+		this.amount = buffer.readVarLong();
+		this.capacity = buffer.readVarLong();
+		this.positions = buffer.readLongArray(null);
+	}
+
+	@Override
+	public void handle(PacketContext context)
+	{
+		World world = context.getWorld();
+		for (long position : this.positions)
+		{
+			BlockPos pos = BlockPos.of(position);
+			if (world.isLoaded(pos))
+			{
+				TileEntity tile = world.getBlockEntity(pos);
+				if (tile instanceof IFluidGridNode)
+				{
+					((IFluidGridNode) tile).onGridStateChanged(this.fluid, this.amount, this.capacity);
+				}
+			}
+		}
+	}
+}
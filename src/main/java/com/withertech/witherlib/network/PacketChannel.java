@@ -18,52 +18,138 @@
 
 package com.withertech.witherlib.network;
 
+import com.withertech.witherlib.util.CoreSide;
+import io.netty.buffer.Unpooled;
 import io.netty.util.collection.IntObjectHashMap;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.entity.player.ServerPlayerEntity;
 import net.minecraft.network.PacketBuffer;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.util.RegistryKey;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.World;
+import net.minecraft.world.server.ServerChunkProvider;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.fml.ModLoadingContext;
 import net.minecraftforge.fml.network.NetworkEvent;
 import net.minecraftforge.fml.network.NetworkRegistry;
 import net.minecraftforge.fml.network.PacketDistributor;
 import net.minecraftforge.fml.network.simple.SimpleChannel;
+import net.minecraftforge.fml.server.ServerLifecycleHooks;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * Created 5/30/2021 by SuperMartijn642
  */
 public class PacketChannel
 {
+	/**
+	 * Default maximum size of a batched frame, this stays below the limit for packets sent to the server
+	 */
+	public static final int DEFAULT_MAX_FRAME_SIZE = 32000;
+	/**
+	 * Version of the wire format, version 2 uses varint packet indices and interned dimensions, version 3 only interns
+	 * dimensions in batched frames, version 4 adds the fluid grid sync packet
+	 */
+	public static final String PROTOCOL_VERSION = "4";
+
+	/**
+	 * Worker pool shared by all channels for packets with {@link PacketExecution#WORKER_POOL}. When the pool is
+	 * saturated, packets are handled on the network thread instead.
+	 */
+	private static final ThreadPoolExecutor WORKER_POOL = createWorkerPool();
+	/**
+	 * Default number of idle packets kept per pooled packet type
+	 */
+	public static final int DEFAULT_POOL_SIZE = 64;
+	private static final PacketPool<InternalPacket> INTERNAL_PACKETS =
+			new PacketPool<>(InternalPacket::new, DEFAULT_POOL_SIZE);
+	/**
+	 * All channels which have been created, used to look up metrics
+	 */
+	private static final Map<ResourceLocation, PacketChannel> CHANNELS = new ConcurrentHashMap<>();
+
+	private final ResourceLocation name;
+	private final PacketMetrics metrics = new PacketMetrics();
 
 	private final SimpleChannel channel;
 	private final HashMap<Class<? extends BasePacket>, Integer> packet_to_index = new HashMap<>();
 	private final IntObjectHashMap<Supplier<? extends BasePacket>> index_to_packet = new IntObjectHashMap<>();
 	/**
-	 * Whether a packet should be handled on the main thread or off thread
+	 * On which thread a packet should be handled
 	 */
-	private final HashMap<Class<? extends BasePacket>, Boolean> packet_to_queued = new HashMap<>();
+	private final HashMap<Class<? extends BasePacket>, PacketExecution> packet_to_execution = new HashMap<>();
+	/**
+	 * Pools of the packet types which have been registered as pooled
+	 */
+	private final HashMap<Class<? extends BasePacket>, PacketPool<? extends BasePacket>> packet_to_pool =
+			new HashMap<>();
+	private final IntObjectHashMap<PacketPool<? extends BasePacket>> index_to_pool = new IntObjectHashMap<>();
+	/**
+	 * Handlers of packets with {@link PacketExecution#MAIN_THREAD_BATCHED}, per side
+	 */
+	private final Queue<Runnable> client_batch = new ConcurrentLinkedQueue<>();
+	private final Queue<Runnable> server_batch = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean client_batch_scheduled = new AtomicBoolean();
+	private final AtomicBoolean server_batch_scheduled = new AtomicBoolean();
 	private int index = 0;
 
+	/**
+	 * Whether packets should be queued and sent together at the end of the tick
+	 */
+	private boolean batching = false;
+	private int max_frame_size = DEFAULT_MAX_FRAME_SIZE;
+	private final Map<ServerPlayerEntity, List<BasePacket>> player_queues = new LinkedHashMap<>();
+	private final List<BasePacket> server_queue = new ArrayList<>();
+
 	private PacketChannel(String modid, String name)
 	{
+		this.name = new ResourceLocation(modid, name);
 		this.channel = NetworkRegistry.newSimpleChannel(
-				new ResourceLocation(modid, name),
-				() -> "1",
-				"1"::equals,
-				"1"::equals
+				this.name,
+				() -> PROTOCOL_VERSION,
+				PROTOCOL_VERSION::equals,
+				PROTOCOL_VERSION::equals
 		);
 		this.channel.registerMessage(0, InternalPacket.class,
 				(message, buffer) -> InternalPacket.write(this, message, buffer),
 				buffer -> InternalPacket.read(this, buffer),
 				(message, context) -> InternalPacket.handle(this, message, context)
 		);
+		this.channel.registerMessage(1, PacketFrame.class,
+				(message, buffer) -> PacketFrame.write(message, buffer),
+				buffer -> PacketFrame.read(this, buffer),
+				(message, context) -> PacketFrame.handle(this, message, context)
+		);
+		MinecraftForge.EVENT_BUS.addListener(this::onServerTick);
+		MinecraftForge.EVENT_BUS.addListener(this::onClientTick);
 	}
 
 	/**
@@ -83,7 +169,30 @@ public class PacketChannel
 		{
 			throw new IllegalArgumentException("Registry name must not be null!");
 		}
-		return new PacketChannel(modid, registryName);
+		PacketChannel channel = new PacketChannel(modid, registryName);
+		CHANNELS.put(channel.name, channel);
+		return channel;
+	}
+
+	/**
+	 * @return all channels which have been created
+	 */
+	public static Collection<PacketChannel> getChannels()
+	{
+		return Collections.unmodifiableCollection(CHANNELS.values());
+	}
+
+	public ResourceLocation getName()
+	{
+		return this.name;
+	}
+
+	/**
+	 * @return the statistics of the packets sent and received through this channel
+	 */
+	public PacketMetrics getMetrics()
+	{
+		return this.metrics;
 	}
 
 	/**
@@ -102,6 +211,45 @@ public class PacketChannel
 		return create(ModLoadingContext.get().getActiveNamespace(), "main");
 	}
 
+	/**
+	 * Sets whether packets should be batched. When enabled, packets are queued per destination and sent at the end
+	 * of the tick as frames containing many packets. Queued packets are only written when they are sent, so they
+	 * must not be modified after being passed to one of the send methods.
+	 *
+	 * @param batching whether packets should be batched
+	 * @return this channel
+	 */
+	public PacketChannel setBatching(boolean batching)
+	{
+		this.batching = batching;
+		if (!batching)
+		{
+			this.flush();
+		}
+		return this;
+	}
+
+	/**
+	 * Sets the maximum size in bytes of a batched frame. Packets which don't fit are sent in the next frame.
+	 *
+	 * @param maxFrameSize maximum size of a frame
+	 * @return this channel
+	 */
+	public PacketChannel setMaxFrameSize(int maxFrameSize)
+	{
+		if (maxFrameSize <= 0)
+		{
+			throw new IllegalArgumentException("Max frame size must be positive!");
+		}
+		this.max_frame_size = maxFrameSize;
+		return this;
+	}
+
+	public boolean isBatching()
+	{
+		return this.batching;
+	}
+
 	/**
 	 * Registers a packet for this channel
 	 *
@@ -115,6 +263,47 @@ public class PacketChannel
 			boolean shouldBeQueued
 	)
 	{
+		this.registerMessage(packetClass, packetSupplier,
+				shouldBeQueued ? PacketExecution.MAIN_THREAD : PacketExecution.NETTY);
+	}
+
+	/**
+	 * Registers a packet for this channel
+	 *
+	 * @param packetClass    class of the packet
+	 * @param packetSupplier supplier for new packet instances
+	 * @param execution      on which thread the packet should be handled
+	 */
+	public <T extends BasePacket> void registerMessage(
+			Class<T> packetClass,
+			Supplier<T> packetSupplier,
+			PacketExecution execution
+	)
+	{
+		this.registerMessage(packetClass, packetSupplier, execution, false);
+	}
+
+	/**
+	 * Registers a packet for this channel. Instances of a pooled packet are reused: received packets are recycled
+	 * after being handled and sent packets after being encoded, so a pooled packet must not be kept or sent twice.
+	 * Pooled packets should be created through {@link #obtain(Class)} and must implement {@link BasePacket#reset()}.
+	 *
+	 * @param packetClass    class of the packet
+	 * @param packetSupplier supplier for new packet instances
+	 * @param execution      on which thread the packet should be handled
+	 * @param pooled         whether instances of the packet should be reused
+	 */
+	public <T extends BasePacket> void registerMessage(
+			Class<T> packetClass,
+			Supplier<T> packetSupplier,
+			PacketExecution execution,
+			boolean pooled
+	)
+	{
+		if (execution == null)
+		{
+			throw new IllegalArgumentException("Execution must not be null!");
+		}
 		if (this.packet_to_index.containsKey(packetClass))
 		{
 			throw new IllegalArgumentException("Class '" + packetClass + "' has already been registered!");
@@ -123,7 +312,32 @@ public class PacketChannel
 		int index = this.index++;
 		this.packet_to_index.put(packetClass, index);
 		this.index_to_packet.put(index, packetSupplier);
-		this.packet_to_queued.put(packetClass, shouldBeQueued);
+		this.packet_to_execution.put(packetClass, execution);
+		if (pooled)
+		{
+			PacketPool<T> pool = new PacketPool<>(packetSupplier, DEFAULT_POOL_SIZE);
+			this.packet_to_pool.put(packetClass, pool);
+			this.index_to_pool.put(index, pool);
+		}
+	}
+
+	/**
+	 * Gets an instance of the given packet type, reusing a recycled instance if the packet is pooled.
+	 *
+	 * @param packetClass class of the packet
+	 * @return a packet of the given type
+	 * @throws IllegalArgumentException if the packet type has not been registered
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends BasePacket> T obtain(Class<T> packetClass)
+	{
+		Integer index = this.packet_to_index.get(packetClass);
+		if (index == null)
+		{
+			throw new IllegalArgumentException("Class '" + packetClass + "' has not been registered!");
+		}
+		PacketPool<? extends BasePacket> pool = this.index_to_pool.get(index);
+		return (T) (pool == null ? this.index_to_packet.get(index).get() : pool.obtain());
 	}
 
 	/**
@@ -134,7 +348,15 @@ public class PacketChannel
 	public void sendToServer(BasePacket packet)
 	{
 		this.checkRegistration(packet);
-		this.channel.sendToServer(new InternalPacket().setPacket(packet));
+		if (this.batching)
+		{
+			synchronized (this.server_queue)
+			{
+				this.server_queue.add(packet);
+			}
+			return;
+		}
+		this.send(this.channel::sendToServer, 1, packet);
 	}
 
 	/**
@@ -150,10 +372,12 @@ public class PacketChannel
 			throw new IllegalStateException("This must only be called server-side!");
 		}
 		this.checkRegistration(packet);
-		this.channel.send(
-				PacketDistributor.PLAYER.with(() -> (ServerPlayerEntity) player),
-				new InternalPacket().setPacket(packet)
-		);
+		if (this.batching)
+		{
+			this.queue((ServerPlayerEntity) player, packet);
+			return;
+		}
+		this.send(PacketDistributor.PLAYER.with(() -> (ServerPlayerEntity) player), 1, packet);
 	}
 
 	/**
@@ -164,7 +388,12 @@ public class PacketChannel
 	public void sendToAllPlayers(BasePacket packet)
 	{
 		this.checkRegistration(packet);
-		this.channel.send(PacketDistributor.ALL.noArg(), new InternalPacket().setPacket(packet));
+		if (this.batching)
+		{
+			this.queue(getServer().getPlayerList().getPlayers(), packet);
+			return;
+		}
+		this.send(PacketDistributor.ALL.noArg(), getServer().getPlayerCount(), packet);
 	}
 
 	/**
@@ -176,7 +405,17 @@ public class PacketChannel
 	public void sendToDimension(RegistryKey<World> dimension, BasePacket packet)
 	{
 		this.checkRegistration(packet);
-		this.channel.send(PacketDistributor.DIMENSION.with(() -> dimension), new InternalPacket().setPacket(packet));
+		ServerWorld level = getServer().getLevel(dimension);
+		if (this.batching)
+		{
+			if (level != null)
+			{
+				this.queue(level.players(), packet);
+			}
+			return;
+		}
+		int recipients = level == null ? 0 : level.players().size();
+		this.send(PacketDistributor.DIMENSION.with(() -> dimension), recipients, packet);
 	}
 
 	/**
@@ -196,6 +435,7 @@ public class PacketChannel
 
 	/**
 	 * Sends the given {@code packet} to all players tracking the given {@code entity}. Must only be used server-side.
+	 * The packet is sent immediately, even if batching is enabled.
 	 *
 	 * @param entity entity which should be tracked
 	 * @param packet packet to be send
@@ -207,8 +447,33 @@ public class PacketChannel
 			throw new IllegalStateException("This must only be called server-side!");
 		}
 		this.checkRegistration(packet);
-		this.channel.send(PacketDistributor.TRACKING_ENTITY.with(() -> entity),
-				new InternalPacket().setPacket(packet));
+		// the entity's trackers aren't exposed, the players tracking its chunk are close enough for the metrics
+		int recipients = (int) getPlayersTracking(entity.level, entity.blockPosition()).count();
+		this.send(PacketDistributor.TRACKING_ENTITY.with(() -> entity), recipients, packet);
+	}
+
+	/**
+	 * Sends the given {@code packet} to all players tracking the chunk at the given position in the given {@code
+	 * world}. Must only be used server-side.
+	 *
+	 * @param world  world the chunk is in
+	 * @param pos    position inside the chunk
+	 * @param packet packet to be send
+	 */
+	public void sendToAllTrackingChunk(World world, BlockPos pos, BasePacket packet)
+	{
+		if (world.isClientSide)
+		{
+			throw new IllegalStateException("This must only be called server-side!");
+		}
+		this.checkRegistration(packet);
+		if (this.batching)
+		{
+			getPlayersTracking(world, pos).forEach(player -> this.queue(player, packet));
+			return;
+		}
+		int recipients = (int) getPlayersTracking(world, pos).count();
+		this.send(PacketDistributor.TRACKING_CHUNK.with(() -> world.getChunkAt(pos)), recipients, packet);
 	}
 
 	/**
@@ -220,10 +485,14 @@ public class PacketChannel
 	public void sendToAllNear(RegistryKey<World> world, double x, double y, double z, double radius, BasePacket packet)
 	{
 		this.checkRegistration(packet);
-		this.channel.send(
-				PacketDistributor.NEAR.with(() -> new PacketDistributor.TargetPoint(x, y, z, radius, world)),
-				new InternalPacket().setPacket(packet)
-		);
+		List<ServerPlayerEntity> players = getPlayersNear(world, x, y, z, radius);
+		if (this.batching)
+		{
+			this.queue(players, packet);
+			return;
+		}
+		PacketDistributor.TargetPoint target = new PacketDistributor.TargetPoint(x, y, z, radius, world);
+		this.send(PacketDistributor.NEAR.with(() -> target), players.size(), packet);
 	}
 
 	/**
@@ -267,6 +536,178 @@ public class PacketChannel
 		this.sendToAllNear(world.dimension(), pos.getX() + 0.5, pos.getY() + 0.5, pos.getZ() + 0.5, radius, packet);
 	}
 
+	/**
+	 * Sends all packets queued by batching right away.
+	 */
+	public void flush()
+	{
+		this.flushPlayerQueues();
+		this.flushServerQueue();
+	}
+
+	private void onServerTick(TickEvent.ServerTickEvent event)
+	{
+		if (event.phase == TickEvent.Phase.END)
+		{
+			this.flushPlayerQueues();
+		}
+	}
+
+	private void onClientTick(TickEvent.ClientTickEvent event)
+	{
+		if (event.phase == TickEvent.Phase.END)
+		{
+			this.flushServerQueue();
+		}
+	}
+
+	private static MinecraftServer getServer()
+	{
+		MinecraftServer server = ServerLifecycleHooks.getCurrentServer();
+		if (server == null)
+		{
+			throw new IllegalStateException("This must only be called server-side!");
+		}
+		return server;
+	}
+
+	private static Stream<ServerPlayerEntity> getPlayersTracking(World world, BlockPos pos)
+	{
+		return ((ServerChunkProvider) world.getChunkSource()).chunkMap.getPlayers(new ChunkPos(pos), false);
+	}
+
+	private static List<ServerPlayerEntity> getPlayersNear(RegistryKey<World> world, double x, double y, double z, double radius)
+	{
+		ServerWorld level = getServer().getLevel(world);
+		if (level == null)
+		{
+			return Collections.emptyList();
+		}
+		List<ServerPlayerEntity> players = new ArrayList<>();
+		for (ServerPlayerEntity player : level.players())
+		{
+			if (player.distanceToSqr(x, y, z) < radius * radius)
+			{
+				players.add(player);
+			}
+		}
+		return players;
+	}
+
+	private void queue(ServerPlayerEntity player, BasePacket packet)
+	{
+		synchronized (this.player_queues)
+		{
+			this.player_queues.computeIfAbsent(player, p -> new ArrayList<>()).add(packet);
+		}
+	}
+
+	private void queue(List<ServerPlayerEntity> players, BasePacket packet)
+	{
+		for (ServerPlayerEntity player : players)
+		{
+			this.queue(player, packet);
+		}
+	}
+
+	private void flushPlayerQueues()
+	{
+		Map<ServerPlayerEntity, List<BasePacket>> queues;
+		synchronized (this.player_queues)
+		{
+			if (this.player_queues.isEmpty())
+			{
+				return;
+			}
+			queues = new LinkedHashMap<>(this.player_queues);
+			this.player_queues.clear();
+		}
+		// the same packet may be queued for many players, so only recycle it once all frames are written
+		Set<BasePacket> sent = Collections.newSetFromMap(new IdentityHashMap<>());
+		queues.forEach((player, packets) ->
+		{
+			if (!player.hasDisconnected())
+			{
+				this.sendFrames(packets, frame -> this.channel.send(PacketDistributor.PLAYER.with(() -> player), frame));
+			}
+			sent.addAll(packets);
+		});
+		sent.forEach(this::recycle);
+	}
+
+	private void flushServerQueue()
+	{
+		List<BasePacket> packets;
+		synchronized (this.server_queue)
+		{
+			if (this.server_queue.isEmpty())
+			{
+				return;
+			}
+			packets = new ArrayList<>(this.server_queue);
+			this.server_queue.clear();
+		}
+		this.sendFrames(packets, this.channel::sendToServer);
+		packets.forEach(this::recycle);
+	}
+
+	/**
+	 * Writes the given packets into as few frames as {@link #max_frame_size} allows and passes them to {@code
+	 * sender}. A packet larger than the maximum size gets a frame of its own.
+	 */
+	private void sendFrames(List<BasePacket> packets, Consumer<PacketFrame> sender)
+	{
+		PacketFrame frame = new PacketFrame();
+		for (BasePacket packet : packets)
+		{
+			int start = frame.data.writerIndex();
+			int size = this.write(packet, frame.data);
+			if (frame.count > 0 && frame.data.readableBytes() > this.max_frame_size)
+			{
+				// the packet doesn't fit, move it to a new frame which has its own dimension table
+				frame.data.writerIndex(start);
+				frame.send(sender, this.metrics);
+				frame = new PacketFrame();
+				size = this.write(packet, frame.data);
+			}
+			frame.add(packet.getClass(), size);
+		}
+		if (frame.count > 0)
+		{
+			frame.send(sender, this.metrics);
+		} else
+		{
+			frame.data.release();
+		}
+	}
+
+	private void send(PacketDistributor.PacketTarget target, int recipients, BasePacket packet)
+	{
+		this.send(message -> this.channel.send(target, message), recipients, packet);
+	}
+
+	/**
+	 * Wraps the given {@code packet} and passes it to {@code sender}. Packets are encoded while being sent, so both
+	 * the wrapper and a pooled packet can be recycled right after. The packet is encoded once for all of its
+	 * {@code recipients}, but counted once per recipient in the metrics, just like a batched packet.
+	 */
+	private void send(Consumer<InternalPacket> sender, int recipients, BasePacket packet)
+	{
+		InternalPacket message = INTERNAL_PACKETS.obtain().setPacket(packet);
+		try
+		{
+			sender.accept(message);
+			if (message.size >= 0)
+			{
+				this.metrics.recordSent(packet.getClass(), recipients, message.size);
+			}
+		} finally
+		{
+			INTERNAL_PACKETS.release(message.setPacket(null));
+			this.recycle(packet);
+		}
+	}
+
 	private void checkRegistration(BasePacket packet)
 	{
 		if (!this.packet_to_index.containsKey(packet.getClass()))
@@ -275,24 +716,36 @@ public class PacketChannel
 		}
 	}
 
-	private void write(BasePacket packet, PacketBuffer buffer)
+	/**
+	 * Writes the given {@code packet} to {@code buffer}. Sent packets are recorded in the metrics by the caller
+	 * once they have been handed to the network.
+	 *
+	 * @return the number of bytes written
+	 */
+	private int write(BasePacket packet, PacketBuffer buffer)
 	{
 		// assume the packet has already been checked for registration here
 		int index = this.packet_to_index.get(packet.getClass());
-		buffer.writeInt(index);
+		int start = buffer.writerIndex();
+		buffer.writeVarInt(index);
 		packet.write(buffer);
+		return buffer.writerIndex() - start;
 	}
 
 	private BasePacket read(PacketBuffer buffer)
 	{
-		int index = buffer.readInt();
+		long time = System.nanoTime();
+		int start = buffer.readerIndex();
+		int index = buffer.readVarInt();
 		if (!this.index_to_packet.containsKey(index))
 		{
 			throw new IllegalStateException("Received an unregistered packet with index '" + index + "'!");
 		}
 
-		BasePacket packet = this.index_to_packet.get(index).get();
+		PacketPool<? extends BasePacket> pool = this.index_to_pool.get(index);
+		BasePacket packet = pool == null ? this.index_to_packet.get(index).get() : pool.obtain();
 		packet.read(buffer);
+		this.metrics.recordReceived(packet.getClass(), buffer.readerIndex() - start, System.nanoTime() - time);
 		return packet;
 	}
 
@@ -302,12 +755,216 @@ public class PacketChannel
 		PacketContext context = new PacketContext(contextSupplier.get());
 		if (packet.verify(context))
 		{
-			if (this.packet_to_queued.get(packet.getClass()))
+			switch (this.packet_to_execution.get(packet.getClass()))
+			{
+				case MAIN_THREAD:
+					context.queueTask(() -> this.handleAndRecycle(packet, context, true));
+					break;
+				case MAIN_THREAD_BATCHED:
+					this.queueBatched(() -> this.handleAndRecycle(packet, context, true), context);
+					break;
+				case WORKER_POOL:
+					WORKER_POOL.execute(() -> this.handleAndRecycle(packet, context, true));
+					break;
+				default:
+					this.handleAndRecycle(packet, context, false);
+			}
+		} else
+		{
+			this.recycle(packet);
+		}
+	}
+
+	private void handleAndRecycle(BasePacket packet, PacketContext context, boolean queued)
+	{
+		long time = System.nanoTime();
+		try
+		{
+			packet.handle(context);
+		} finally
+		{
+			this.metrics.recordHandled(packet.getClass(), queued, System.nanoTime() - time);
+			this.recycle(packet);
+		}
+	}
+
+	/**
+	 * Returns the given {@code packet} to its pool, if its type is pooled
+	 */
+	@SuppressWarnings("unchecked")
+	private void recycle(BasePacket packet)
+	{
+		PacketPool<BasePacket> pool = (PacketPool<BasePacket>) this.packet_to_pool.get(packet.getClass());
+		if (pool != null)
+		{
+			pool.release(packet);
+		}
+	}
+
+	/**
+	 * Adds the given {@code task} to the batch of the handling side, and schedules the batch to be run on the main
+	 * thread if it isn't already.
+	 */
+	private void queueBatched(Runnable task, PacketContext context)
+	{
+		boolean client = context.getHandlingSide() == CoreSide.CLIENT;
+		Queue<Runnable> batch = client ? this.client_batch : this.server_batch;
+		AtomicBoolean scheduled = client ? this.client_batch_scheduled : this.server_batch_scheduled;
+		batch.add(task);
+		if (scheduled.compareAndSet(false, true))
+		{
+			context.queueTask(() ->
+			{
+				scheduled.set(false);
+				Runnable next;
+				while ((next = batch.poll()) != null)
+				{
+					next.run();
+				}
+			});
+		}
+	}
+
+	private static ThreadPoolExecutor createWorkerPool()
+	{
+		int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+		AtomicInteger count = new AtomicInteger();
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(1024),
+				runnable ->
+				{
+					Thread thread = new Thread(runnable, "WitherLib Packet Worker #" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				},
+				new ThreadPoolExecutor.CallerRunsPolicy()
+		);
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	/**
+	 * A bounded pool of reusable packets
+	 */
+	private static class PacketPool<T>
+	{
+
+		private final Supplier<T> supplier;
+		private final ArrayDeque<T> idle;
+		private final int capacity;
+
+		private PacketPool(Supplier<T> supplier, int capacity)
+		{
+			this.supplier = supplier;
+			this.capacity = capacity;
+			this.idle = new ArrayDeque<>(capacity);
+		}
+
+		private T obtain()
+		{
+			T instance;
+			synchronized (this.idle)
+			{
+				instance = this.idle.poll();
+			}
+			return instance == null ? this.supplier.get() : instance;
+		}
+
+		private void release(T instance)
+		{
+			if (instance instanceof BasePacket)
+			{
+				((BasePacket) instance).reset();
+			}
+			synchronized (this.idle)
+			{
+				if (this.idle.size() < this.capacity)
+				{
+					this.idle.add(instance);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A frame holding many encoded packets, used by batching
+	 */
+	private static class PacketFrame
+	{
+
+		private final CompactPacketBuffer data;
+		private final List<BasePacket> packets;
+		private int count;
+		/**
+		 * Types and encoded sizes of the written packets, recorded in the metrics once the frame is sent
+		 */
+		private final List<Class<? extends BasePacket>> types;
+		private int[] sizes;
+
+		private PacketFrame()
+		{
+			this.data = new CompactPacketBuffer(Unpooled.buffer());
+			this.packets = null;
+			this.types = new ArrayList<>();
+			this.sizes = new int[16];
+		}
+
+		private PacketFrame(List<BasePacket> packets)
+		{
+			this.data = null;
+			this.packets = packets;
+			this.count = packets.size();
+			this.types = null;
+		}
+
+		public static PacketFrame read(PacketChannel channel, PacketBuffer buffer)
+		{
+			int count = buffer.readVarInt();
+			CompactPacketBuffer data = new CompactPacketBuffer(buffer);
+			List<BasePacket> packets = new ArrayList<>(count);
+			for (int i = 0; i < count; i++)
+			{
+				packets.add(channel.read(data));
+			}
+			return new PacketFrame(packets);
+		}
+
+		public static void write(PacketFrame frame, PacketBuffer buffer)
+		{
+			buffer.writeVarInt(frame.count);
+			buffer.writeBytes(frame.data, frame.data.readerIndex(), frame.data.readableBytes());
+		}
+
+		public static void handle(PacketChannel channel, PacketFrame frame, Supplier<NetworkEvent.Context> context)
+		{
+			for (BasePacket packet : frame.packets)
+			{
+				channel.handle(packet, context);
+			}
+		}
+
+		private void add(Class<? extends BasePacket> type, int size)
+		{
+			if (this.count == this.sizes.length)
+			{
+				this.sizes = Arrays.copyOf(this.sizes, this.count * 2);
+			}
+			this.types.add(type);
+			this.sizes[this.count++] = size;
+		}
+
+		private void send(Consumer<PacketFrame> sender, PacketMetrics metrics)
+		{
+			try
 			{
-				context.queueTask(() -> packet.handle(context));
-			} else
+				sender.accept(this);
+				for (int i = 0; i < this.count; i++)
+				{
+					metrics.recordSent(this.types.get(i), 1, this.sizes[i]);
+				}
+			} finally
 			{
-				packet.handle(context);
+				this.data.release();
 			}
 		}
 	}
@@ -316,25 +973,32 @@ public class PacketChannel
 	{
 
 		private BasePacket packet;
+		/**
+		 * Encoded size of the packet, or {@code -1} if it hasn't been encoded
+		 */
+		private int size = -1;
 
 		public static InternalPacket read(PacketChannel channel, PacketBuffer buffer)
 		{
-			return new InternalPacket().setPacket(channel.read(buffer));
+			return INTERNAL_PACKETS.obtain().setPacket(channel.read(buffer));
 		}
 
 		public static void write(PacketChannel channel, InternalPacket packet, PacketBuffer buffer)
 		{
-			channel.write(packet.packet, buffer);
+			packet.size = channel.write(packet.packet, buffer);
 		}
 
 		public static void handle(PacketChannel channel, InternalPacket packet, Supplier<NetworkEvent.Context> context)
 		{
-			channel.handle(packet.packet, context);
+			BasePacket message = packet.packet;
+			INTERNAL_PACKETS.release(packet.setPacket(null));
+			channel.handle(message, context);
 		}
 
 		public InternalPacket setPacket(BasePacket packet)
 		{
 			this.packet = packet;
+			this.size = -1;
 			return this;
 		}
 	}
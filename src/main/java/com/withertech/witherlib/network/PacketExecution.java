@@ -0,0 +1,51 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.withertech.witherlib.network;
+
+/**
+ * Determines on which thread a packet's {@link BasePacket#handle(PacketContext)} is run
+ */
+public enum PacketExecution
+{
+	/**
+	 * Handles the packet directly on the network thread
+	 */
+	NETTY,
+	/**
+	 * Queues the packet to be handled on the main thread
+	 */
+	MAIN_THREAD,
+	/**
+	 * Handles the packet on a bounded pool of worker threads. Only suitable for packets which do pure computation and
+	 * don't touch the world.
+	 */
+	WORKER_POOL,
+	/**
+	 * Collects the packet together with other packets of the channel and handles all of them in a single task on the
+	 * main thread
+	 */
+	MAIN_THREAD_BATCHED;
+
+	/**
+	 * @return whether packets with this execution are handled on the main thread
+	 */
+	public boolean isMainThread()
+	{
+		return this == MAIN_THREAD || this == MAIN_THREAD_BATCHED;
+	}
+}
@@ -0,0 +1,264 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.withertech.witherlib.network;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records per packet type statistics of a {@link PacketChannel} over a rolling window of {@link #WINDOW} seconds
+ */
+public class PacketMetrics
+{
+	/**
+	 * Length of the rolling window in seconds
+	 */
+	public static final int WINDOW = 60;
+
+	private final Map<Class<? extends BasePacket>, PacketStats> stats = new ConcurrentHashMap<>();
+
+	PacketMetrics()
+	{
+	}
+
+	private static long now()
+	{
+		return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+	}
+
+	/**
+	 * Records a packet handed to the network, once per recipient
+	 */
+	void recordSent(Class<? extends BasePacket> packet, int recipients, int bytes)
+	{
+		if (recipients > 0)
+		{
+			this.getStats(packet).add(Stat.SENT, recipients, (long) bytes * recipients);
+		}
+	}
+
+	void recordReceived(Class<? extends BasePacket> packet, int bytes, long decodeNanos)
+	{
+		PacketStats stats = this.getStats(packet);
+		stats.add(Stat.RECEIVED, bytes);
+		stats.add(Stat.DECODE, decodeNanos);
+	}
+
+	void recordHandled(Class<? extends BasePacket> packet, boolean queued, long handleNanos)
+	{
+		this.getStats(packet).add(queued ? Stat.HANDLE_QUEUED : Stat.HANDLE_INLINE, handleNanos);
+	}
+
+	private PacketStats getStats(Class<? extends BasePacket> packet)
+	{
+		return this.stats.computeIfAbsent(packet, p -> new PacketStats());
+	}
+
+	/**
+	 * Sums the statistics of every packet type which has been sent or received over the last {@code seconds}.
+	 *
+	 * @param seconds length of the window, at most {@link #WINDOW}
+	 * @return the statistics per packet type
+	 */
+	public Map<Class<? extends BasePacket>, Snapshot> getSnapshot(int seconds)
+	{
+		if (seconds <= 0 || seconds > WINDOW)
+		{
+			throw new IllegalArgumentException("Seconds must be between 1 and " + WINDOW + "!");
+		}
+		long now = now();
+		Map<Class<? extends BasePacket>, Snapshot> snapshot = new HashMap<>();
+		this.stats.forEach((packet, stats) ->
+		{
+			Snapshot packetSnapshot = stats.sum(now, seconds);
+			if (!packetSnapshot.isEmpty())
+			{
+				snapshot.put(packet, packetSnapshot);
+			}
+		});
+		return snapshot;
+	}
+
+	private enum Stat
+	{
+		SENT, RECEIVED, DECODE, HANDLE_INLINE, HANDLE_QUEUED
+	}
+
+	/**
+	 * Ring of one second buckets for a single packet type
+	 */
+	private static class PacketStats
+	{
+
+		private final Bucket[] buckets = new Bucket[WINDOW];
+
+		private PacketStats()
+		{
+			for (int i = 0; i < WINDOW; i++)
+			{
+				this.buckets[i] = new Bucket();
+			}
+		}
+
+		private void add(Stat stat, long value)
+		{
+			this.add(stat, 1, value);
+		}
+
+		private void add(Stat stat, int count, long value)
+		{
+			long second = now();
+			Bucket bucket = this.buckets[(int) (second % WINDOW)];
+			if (bucket.second != second)
+			{
+				synchronized (bucket)
+				{
+					if (bucket.second != second)
+					{
+						bucket.clear();
+						bucket.second = second;
+					}
+				}
+			}
+			bucket.counts[stat.ordinal()].add(count);
+			bucket.totals[stat.ordinal()].add(value);
+		}
+
+		private Snapshot sum(long now, int seconds)
+		{
+			long[] counts = new long[Stat.values().length];
+			long[] totals = new long[Stat.values().length];
+			for (Bucket bucket : this.buckets)
+			{
+				if (now - bucket.second < seconds)
+				{
+					for (int i = 0; i < counts.length; i++)
+					{
+						counts[i] += bucket.counts[i].sum();
+						totals[i] += bucket.totals[i].sum();
+					}
+				}
+			}
+			return new Snapshot(counts, totals);
+		}
+	}
+
+	private static class Bucket
+	{
+
+		private final LongAdder[] counts = new LongAdder[Stat.values().length];
+		private final LongAdder[] totals = new LongAdder[Stat.values().length];
+		private volatile long second = Long.MIN_VALUE;
+
+		private Bucket()
+		{
+			for (int i = 0; i < this.counts.length; i++)
+			{
+				this.counts[i] = new LongAdder();
+				this.totals[i] = new LongAdder();
+			}
+		}
+
+		private void clear()
+		{
+			for (int i = 0; i < this.counts.length; i++)
+			{
+				this.counts[i].reset();
+				this.totals[i].reset();
+			}
+		}
+	}
+
+	/**
+	 * Statistics of a single packet type over a window
+	 */
+	public static class Snapshot
+	{
+
+		private final long[] counts;
+		private final long[] totals;
+
+		private Snapshot(long[] counts, long[] totals)
+		{
+			this.counts = counts;
+			this.totals = totals;
+		}
+
+		private boolean isEmpty()
+		{
+			return this.getSentCount() == 0 && this.getReceivedCount() == 0;
+		}
+
+		public long getSentCount()
+		{
+			return this.counts[Stat.SENT.ordinal()];
+		}
+
+		/**
+		 * @return the number of bytes the sent packets were encoded to
+		 */
+		public long getSentBytes()
+		{
+			return this.totals[Stat.SENT.ordinal()];
+		}
+
+		public long getReceivedCount()
+		{
+			return this.counts[Stat.RECEIVED.ordinal()];
+		}
+
+		public long getReceivedBytes()
+		{
+			return this.totals[Stat.RECEIVED.ordinal()];
+		}
+
+		public long getDecodeNanos()
+		{
+			return this.totals[Stat.DECODE.ordinal()];
+		}
+
+		public long getInlineHandleCount()
+		{
+			return this.counts[Stat.HANDLE_INLINE.ordinal()];
+		}
+
+		/**
+		 * @return the total time spent handling packets on the network thread
+		 */
+		public long getInlineHandleNanos()
+		{
+			return this.totals[Stat.HANDLE_INLINE.ordinal()];
+		}
+
+		public long getQueuedHandleCount()
+		{
+			return this.counts[Stat.HANDLE_QUEUED.ordinal()];
+		}
+
+		/**
+		 * @return the total time spent handling packets on the main thread or worker pool
+		 */
+		public long getQueuedHandleNanos()
+		{
+			return this.totals[Stat.HANDLE_QUEUED.ordinal()];
+		}
+	}
+}
@@ -78,7 +78,13 @@ public abstract class TileEntityBasePacket<T extends TileEntity> extends BlockPo
 		buffer.writeBoolean(this.dimension != null);
 		if (this.dimension != null)
 		{
-			buffer.writeResourceLocation(this.dimension.location());
+			if (buffer instanceof CompactPacketBuffer)
+			{
+				((CompactPacketBuffer) buffer).writeDimension(this.dimension);
+			} else
+			{
+				buffer.writeResourceLocation(this.dimension.location());
+			}
 		}
 	}
 
@@ -88,10 +94,19 @@ public abstract class TileEntityBasePacket<T extends TileEntity> extends BlockPo
 		super.read(buffer);
 		if (buffer.readBoolean())
 		{
-			this.dimension = RegistryKey.create(Registry.DIMENSION_REGISTRY, buffer.readResourceLocation());
+			this.dimension = buffer instanceof CompactPacketBuffer ?
+					((CompactPacketBuffer) buffer).readDimension() :
+					RegistryKey.create(Registry.DIMENSION_REGISTRY, buffer.readResourceLocation());
 		}
 	}
 
+	@Override
+	public void reset()
+	{
+		super.reset();
+		this.dimension = null;
+	}
+
 	@Override
 	protected void handle(BlockPos pos, PacketContext context)
 	{
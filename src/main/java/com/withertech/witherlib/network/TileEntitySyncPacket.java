@@ -0,0 +1,102 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.withertech.witherlib.network;
+
+import com.withertech.witherlib.tile.BaseTileEntity;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.PacketBuffer;
+
+/**
+ * Sends the changed sync variables of a {@link BaseTileEntity} to the client in a compact binary
+ * format, without building any NBT.
+ *
+ * @see BaseTileEntity#useBinarySync()
+ */
+public class TileEntitySyncPacket extends TileEntityBasePacket<BaseTileEntity<?>>
+{
+	private BaseTileEntity<?> tile;
+	private long dirtyFields;
+	private byte[] data;
+
+	public TileEntitySyncPacket()
+	{
+	}
+
+	/**
+	 * Sends the fields in {@code dirtyFields} of the given tile entity.
+	 *
+	 * @param tile        tile entity to sync
+	 * @param dirtyFields dirty mask of the fields to be sent
+	 */
+	public TileEntitySyncPacket(BaseTileEntity<?> tile, long dirtyFields)
+	{
+		this.set(tile, dirtyFields);
+	}
+
+	/**
+	 * Sets the tile entity and fields to be sent, used to fill pooled instances.
+	 *
+	 * @param tile        tile entity to sync
+	 * @param dirtyFields dirty mask of the fields to be sent
+	 * @return this packet
+	 */
+	public TileEntitySyncPacket set(BaseTileEntity<?> tile, long dirtyFields)
+	{
+		this.dimension = tile.getLevel() == null ? null : tile.getLevel().dimension();
+		this.pos = tile.getBlockPos();
+		this.tile = tile;
+		this.dirtyFields = dirtyFields;
+		return this;
+	}
+
+	@Override
+	public void reset()
+	{
+		super.reset();
+		this.tile = null;
+		this.dirtyFields = 0;
+		this.data = null;
+	}
+
+	@Override
+	public void write(PacketBuffer buffer)
+	{
+		super.write(buffer);
+		// the length is only known afterwards
+		int lengthIndex = buffer.writerIndex();
+		buffer.writeMedium(0);
+		this.tile.writeSyncData(buffer, this.dirtyFields);
+		buffer.setMedium(lengthIndex, buffer.writerIndex() - lengthIndex - 3);
+	}
+
+	@Override
+	public void read(PacketBuffer buffer)
+	{
+		super.read(buffer);
+		// the tile entity is needed to decode the fields, so keep the data until the packet is handled
+		this.data = new byte[buffer.readUnsignedMedium()];
+		buffer.readBytes(this.data);
+	}
+
+	@Override
+	protected void handle(BaseTileEntity<?> tile, PacketContext context)
+	{
+		tile.readSyncData(new PacketBuffer(Unpooled.wrappedBuffer(this.data)));
+	}
+}
@@ -20,6 +20,7 @@ package com.withertech.witherlib.registration;
 
 import com.withertech.witherlib.network.BasePacket;
 import com.withertech.witherlib.network.PacketChannel;
+import com.withertech.witherlib.network.PacketExecution;
 
 import javax.annotation.Nonnull;
 import java.util.ArrayList;
@@ -79,14 +80,21 @@ public class BuilderNetworkRegistry
 										packetChannel,
 										packet.getPacketClass(),
 										packet.getPacketSupplier(),
-										packet.isShouldBeQueued()
+										packet.getExecution(),
+										packet.isPooled()
 								)));
 	}
 
 	@SuppressWarnings({"unchecked", "rawtypes"})
-	private void registerPacket(@Nonnull PacketChannel channel, Class type, Supplier supplier, boolean queue)
+	private void registerPacket(
+			@Nonnull PacketChannel channel,
+			Class type,
+			Supplier supplier,
+			PacketExecution execution,
+			boolean pooled
+	)
 	{
-		channel.registerMessage(type, supplier, queue);
+		channel.registerMessage(type, supplier, execution, pooled);
 	}
 
 	public static class Builder
@@ -102,7 +110,12 @@ public class BuilderNetworkRegistry
 
 		public Builder add(String name, Channel channel)
 		{
-			CHANNELS.put(name, PacketChannel.create(mod.MODID, name));
+			PacketChannel packetChannel = PacketChannel.create(mod.MODID, name);
+			if (channel.batched)
+			{
+				packetChannel.setMaxFrameSize(channel.maxFrameSize).setBatching(true);
+			}
+			CHANNELS.put(name, packetChannel);
 			PACKETS.put(name, channel.PACKETS);
 			return this;
 		}
@@ -123,15 +136,21 @@ public class BuilderNetworkRegistry
 	public static class Channel
 	{
 		private final List<Packet<?>> PACKETS;
+		private final boolean batched;
+		private final int maxFrameSize;
 
 		private Channel(ChannelBuilder builder)
 		{
 			PACKETS = builder.PACKETS;
+			batched = builder.batched;
+			maxFrameSize = builder.maxFrameSize;
 		}
 
 		public static class ChannelBuilder
 		{
 			private final List<Packet<?>> PACKETS = new ArrayList<>();
+			private boolean batched = false;
+			private int maxFrameSize = PacketChannel.DEFAULT_MAX_FRAME_SIZE;
 
 			private ChannelBuilder()
 			{
@@ -144,7 +163,39 @@ public class BuilderNetworkRegistry
 					boolean shouldBeQueued
 			)
 			{
-				PACKETS.add(new Packet<>(packetClass, packetSupplier, shouldBeQueued));
+				return add(packetClass, packetSupplier,
+						shouldBeQueued ? PacketExecution.MAIN_THREAD : PacketExecution.NETTY);
+			}
+
+			public <T extends BasePacket> ChannelBuilder add(
+					Class<T> packetClass,
+					Supplier<T> packetSupplier,
+					PacketExecution execution
+			)
+			{
+				return add(packetClass, packetSupplier, execution, false);
+			}
+
+			public <T extends BasePacket> ChannelBuilder add(
+					Class<T> packetClass,
+					Supplier<T> packetSupplier,
+					PacketExecution execution,
+					boolean pooled
+			)
+			{
+				PACKETS.add(new Packet<>(packetClass, packetSupplier, execution, pooled));
+				return this;
+			}
+
+			public ChannelBuilder batched()
+			{
+				return batched(PacketChannel.DEFAULT_MAX_FRAME_SIZE);
+			}
+
+			public ChannelBuilder batched(int maxFrameSize)
+			{
+				this.batched = true;
+				this.maxFrameSize = maxFrameSize;
 				return this;
 			}
 
@@ -158,14 +209,16 @@ public class BuilderNetworkRegistry
 		{
 			private final Class<T> packetClass;
 			private final Supplier<T> packetSupplier;
-			private final boolean shouldBeQueued;
+			private final PacketExecution execution;
+			private final boolean pooled;
 
-			private Packet(Class<T> packetClass, Supplier<T> packetSupplier, boolean shouldBeQueued)
+			private Packet(Class<T> packetClass, Supplier<T> packetSupplier, PacketExecution execution, boolean pooled)
 			{
 
 				this.packetClass = packetClass;
 				this.packetSupplier = packetSupplier;
-				this.shouldBeQueued = shouldBeQueued;
+				this.execution = execution;
+				this.pooled = pooled;
 			}
 
 			public Class<T> getPacketClass()
@@ -180,7 +233,17 @@ public class BuilderNetworkRegistry
 
 			public boolean isShouldBeQueued()
 			{
-				return shouldBeQueued;
+				return execution.isMainThread();
+			}
+
+			public PacketExecution getExecution()
+			{
+				return execution;
+			}
+
+			public boolean isPooled()
+			{
+				return pooled;
 			}
 		}
 	}
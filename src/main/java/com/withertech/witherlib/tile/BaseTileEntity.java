@@ -18,22 +18,55 @@
 
 package com.withertech.witherlib.tile;
 
+import com.withertech.witherlib.WitherLib;
+import com.withertech.witherlib.grid.GridManager;
+import com.withertech.witherlib.grid.IGridNode;
+import com.withertech.witherlib.nbt.SyncCodec;
+import com.withertech.witherlib.nbt.SyncField;
+import com.withertech.witherlib.nbt.SyncPlan;
 import com.withertech.witherlib.nbt.SyncVariable;
+import com.withertech.witherlib.network.PacketChannel;
+import com.withertech.witherlib.network.TileEntitySyncPacket;
 import net.minecraft.block.BlockState;
 import net.minecraft.nbt.CompoundNBT;
 import net.minecraft.network.NetworkManager;
+import net.minecraft.network.PacketBuffer;
 import net.minecraft.network.play.server.SUpdateTileEntityPacket;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.tileentity.TileEntityType;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.util.LazyOptional;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * Created 1/26/2021 by SuperMartijn642
  */
 public abstract class BaseTileEntity<T extends BaseTileEntity<T>> extends TileEntity
 {
-	private boolean dataChanged = false;
+	/**
+	 * Dirty mask marking every field, which sends the full {@link #writeClientData()}
+	 */
+	private static final long ALL_FIELDS = -1L;
+
+	private long dirtyFields = 0;
+	/**
+	 * Game time of the last update packet, used by the {@link TileSyncScheduler}
+	 */
+	long lastSyncTime = Long.MIN_VALUE / 2;
+	/**
+	 * Fingerprints of the packet fields as of the last change detection, see {@link #autoDetectChanges()}
+	 */
+	private long[] syncSnapshot;
+	/**
+	 * Cached result of {@link #writeItemStackData()}, cleared whenever the tile entity is changed, saved or read
+	 */
+	private CompoundNBT itemStackData;
+	@Nullable
+	private NeighbourCache neighbourCache;
 
 	public BaseTileEntity(TileEntityType<T> tileEntityTypeIn)
 	{
@@ -41,16 +74,303 @@ public abstract class BaseTileEntity<T extends BaseTileEntity<T>> extends TileEn
 	}
 
 	/**
-	 * Marks the tile entity as dirty and send an update packet to clients.
+	 * Fields past the 63rd share the last bit of the dirty mask.
+	 */
+	private static long fieldBit(int index)
+	{
+		return 1L << Math.min(index, 63);
+	}
+
+	/**
+	 * Marks the tile entity as dirty and schedules an update packet to clients.
+	 * The update packet will contain all data from {@link #writeClientData()}.
 	 */
 	public void dataChanged()
 	{
-		this.dataChanged = true;
+		this.itemStackData = null;
+		this.dirtyFields = ALL_FIELDS;
+		this.sendUpdate();
+	}
+
+	/**
+	 * Marks the tile entity as dirty and schedules an update packet to clients.
+	 * Unless other changes are pending, the update packet will only contain the given field.
+	 *
+	 * @param field the {@link SyncVariable#name()} of the field which changed
+	 * @throws IllegalArgumentException if this tile entity has no sync variable named {@code field}
+	 */
+	public void dataChanged(String field)
+	{
+		int index = SyncPlan.of(this.getClass()).indexOf(field);
+		if (index >= 0)
+		{
+			this.itemStackData = null;
+			this.dirtyFields |= fieldBit(index);
+			this.sendUpdate();
+			return;
+		}
+		throw new IllegalArgumentException("Tile entity '" + this.getClass() + "' has no sync variable '" + field + "'!");
+	}
+
+	private void sendUpdate()
+	{
 		this.setChanged();
 		assert this.level != null;
+		if (this.level.isClientSide())
+		{
+			this.sendBlockUpdated();
+		} else
+		{
+			TileSyncScheduler.schedule(this);
+		}
+	}
+
+	/**
+	 * Whether changes to {@link SyncVariable} fields should be detected automatically. When enabled, the
+	 * {@link TileSyncScheduler} compares the fields sent to clients against their values of the previous tick
+	 * once per tick and marks the changed ones dirty, so {@link #dataChanged(String)} needs no calls.
+	 * <p>
+	 * Every packet field is checked each tick, so this costs time even while nothing changes. Primitive fields
+	 * are compared by value, other fields by the {@link SyncCodec#fingerprint(Object) fingerprint} of
+	 * their codec, which covers the built-in value types, arrays, stacks and energy buffers.
+	 * Changes to fields whose codec has no fingerprint, such as NBT tags and {@code INBTSerializable}s, are not
+	 * detected and still need {@link #dataChanged(String)}.
+	 *
+	 * @return {@code true} to detect changes automatically
+	 */
+	protected boolean autoDetectChanges()
+	{
+		return false;
+	}
+
+	/**
+	 * Compares the packet fields against the last snapshot and marks the changed ones dirty.
+	 * The first call only records the snapshot.
+	 */
+	void detectChanges()
+	{
+		SyncPlan plan = SyncPlan.of(this.getClass());
+		long[] snapshot = this.syncSnapshot;
+		boolean first = snapshot == null;
+		if (first)
+		{
+			snapshot = this.syncSnapshot = new long[plan.size()];
+		}
+		long changed = 0;
+		for (int index = 0; index < snapshot.length; index++)
+		{
+			SyncField field = plan.getField(index);
+			if (field.isOnPacket())
+			{
+				long value = field.snapshot(this);
+				if (value != snapshot[index])
+				{
+					snapshot[index] = value;
+					changed |= fieldBit(index);
+				}
+			}
+		}
+		if (changed != 0 && !first)
+		{
+			this.dirtyFields |= changed;
+			this.sendUpdate();
+		}
+	}
+
+	/**
+	 * Gets the capability of the neighbouring tile entity on the given side. The result is cached until the
+	 * capability is invalidated or the neighbour changes, so this can be called every tick. A missing capability is
+	 * looked up again once a second.
+	 *
+	 * @param capability the capability to get
+	 * @param side       the side of this tile entity the neighbour is on
+	 * @return the capability of the neighbour, or an empty optional if there is none
+	 */
+	public <C> LazyOptional<C> getNeighbourCapability(Capability<C> capability, Direction side)
+	{
+		return this.getNeighbourEntry(capability, side).getCapability();
+	}
+
+	/**
+	 * Like {@link #getNeighbourCapability(Capability, Direction)}, but gets the capability itself.
+	 *
+	 * @param capability the capability to get
+	 * @param side       the side of this tile entity the neighbour is on
+	 * @return the capability of the neighbour, or {@code null} if there is none
+	 */
+	@Nullable
+	public <C> C getNeighbour(Capability<C> capability, Direction side)
+	{
+		return this.getNeighbourEntry(capability, side).getValue();
+	}
+
+	private <C> NeighbourCache.Entry<C> getNeighbourEntry(Capability<C> capability, Direction side)
+	{
+		assert this.level != null;
+		if (this.neighbourCache == null)
+		{
+			this.neighbourCache = new NeighbourCache();
+		}
+		return this.neighbourCache.get(this.level, this.worldPosition, capability, side);
+	}
+
+	/**
+	 * Clears the cached capabilities of the given neighbour, unless it is still the same tile entity. Called by
+	 * {@link com.withertech.witherlib.block.BaseTileBlock} when a neighbour changes.
+	 *
+	 * @param neighbour the position of the neighbour which changed
+	 */
+	public void onNeighbourChanged(BlockPos neighbour)
+	{
+		if (this.neighbourCache != null)
+		{
+			BlockPos offset = neighbour.subtract(this.worldPosition);
+			Direction side = Direction.fromNormal(offset.getX(), offset.getY(), offset.getZ());
+			if (side != null)
+			{
+				this.neighbourCache.invalidate(this.level, neighbour, side);
+			}
+		}
+	}
+
+	@Override
+	public void onLoad()
+	{
+		super.onLoad();
+		if (this.level != null && !this.level.isClientSide())
+		{
+			if (this.autoDetectChanges())
+			{
+				TileSyncScheduler.watch(this);
+			}
+			if (this instanceof IGridNode)
+			{
+				GridManager.join((IGridNode) this);
+			}
+		}
+	}
+
+	@Override
+	public void setRemoved()
+	{
+		super.setRemoved();
+		if (this.neighbourCache != null)
+		{
+			this.neighbourCache.invalidateAll();
+		}
+		if (this.level != null && !this.level.isClientSide())
+		{
+			TileSyncScheduler.unwatch(this);
+			if (this instanceof IGridNode)
+			{
+				GridManager.leave((IGridNode) this);
+			}
+		}
+	}
+
+	@Override
+	public void onChunkUnloaded()
+	{
+		super.onChunkUnloaded();
+		if (this.level != null && !this.level.isClientSide())
+		{
+			TileSyncScheduler.unwatch(this);
+			if (this instanceof IGridNode)
+			{
+				GridManager.leave((IGridNode) this);
+			}
+		}
+	}
+
+	void sendBlockUpdated()
+	{
+		assert this.level != null;
+		if (this.useBinarySync() && !this.level.isClientSide())
+		{
+			long dirtyFields = this.dirtyFields;
+			this.dirtyFields = 0;
+			if (dirtyFields != 0)
+			{
+				PacketChannel net = WitherLib.INSTANCE.REGISTRY.getNet();
+				net.sendToAllTrackingChunk(
+						this.level,
+						this.worldPosition,
+						net.obtain(TileEntitySyncPacket.class).set(this, dirtyFields)
+				);
+			}
+			return;
+		}
 		this.level.sendBlockUpdated(this.worldPosition, this.getBlockState(), this.getBlockState(), 2 | 4);
 	}
 
+	/**
+	 * Whether update packets should be sent as a binary {@link TileEntitySyncPacket} rather than an
+	 * NBT update packet. The binary packet only carries {@link SyncVariable} fields, so data written in
+	 * overrides of {@link #writeClientData()} won't be sent, and the block won't be re-rendered.
+	 * The full NBT snapshot from {@link #getUpdateTag()} is still used when a chunk is loaded.
+	 *
+	 * @return {@code true} to sync changes through the binary packet
+	 */
+	protected boolean useBinarySync()
+	{
+		return false;
+	}
+
+	/**
+	 * Writes the sync variables in the given dirty mask to {@code buffer}, each prefixed by its
+	 * index. The data will be read in {@link #readSyncData(PacketBuffer)}.
+	 *
+	 * @param buffer      buffer to write to
+	 * @param dirtyFields dirty mask of the fields to write
+	 */
+	public void writeSyncData(PacketBuffer buffer, long dirtyFields)
+	{
+		SyncPlan plan = SyncPlan.of(this.getClass());
+		for (int index = 0; index < plan.size(); index++)
+		{
+			SyncField field = plan.getField(index);
+			if ((dirtyFields & fieldBit(index)) != 0 && field.isOnPacket())
+			{
+				buffer.writeVarInt(index);
+				field.write(this, buffer);
+			}
+		}
+	}
+
+	/**
+	 * Reads sync variables written by {@link #writeSyncData(PacketBuffer, long)}.
+	 *
+	 * @param buffer buffer to read from
+	 */
+	public void readSyncData(PacketBuffer buffer)
+	{
+		SyncPlan plan = SyncPlan.of(this.getClass());
+		while (buffer.isReadable())
+		{
+			int index = buffer.readVarInt();
+			if (index < 0 || index >= plan.size())
+			{
+				// the server has different sync variables, the rest of the packet can't be read
+				WitherLib.LOGGER.warn("Received unknown sync variable " + index + " for " + this.getType().getRegistryName() +
+						" at " + this.worldPosition + ", skipping the rest of the update");
+				buffer.skipBytes(buffer.readableBytes());
+				return;
+			}
+			plan.getField(index).read(this, buffer);
+		}
+	}
+
+	/**
+	 * Gets the minimum number of ticks between two update packets. Changes within that time
+	 * are sent together, except when a player has the tile entity's gui open.
+	 *
+	 * @return the minimum number of ticks between update packets
+	 */
+	protected int getSyncInterval()
+	{
+		return WitherLib.SERVER_CONFIG.syncInterval.get();
+	}
+
 	/**
 	 * Writes tile entity data to be saved with the chunk.
 	 * The stored data will be read in {@link #readData(CompoundNBT)}.
@@ -59,7 +379,7 @@ public abstract class BaseTileEntity<T extends BaseTileEntity<T>> extends TileEn
 	 */
 	protected CompoundNBT writeData()
 	{
-		return SyncVariable.Helper.writeSyncVars(this, new CompoundNBT(), SyncVariable.Type.WRITE);
+		return SyncPlan.of(this.getClass()).write(this, new CompoundNBT(), SyncVariable.Type.WRITE);
 	}
 
 	/**
@@ -70,7 +390,28 @@ public abstract class BaseTileEntity<T extends BaseTileEntity<T>> extends TileEn
 	 */
 	protected CompoundNBT writeClientData()
 	{
-		return SyncVariable.Helper.writeSyncVars(this, new CompoundNBT(), SyncVariable.Type.PACKET);
+		return SyncPlan.of(this.getClass()).write(this, new CompoundNBT(), SyncVariable.Type.PACKET);
+	}
+
+	/**
+	 * Writes the client data of only the fields in the given dirty mask.
+	 *
+	 * @param dirtyFields dirty mask of the fields to write
+	 * @return a {@link CompoundNBT} with the changed client data
+	 */
+	private CompoundNBT writeClientData(long dirtyFields)
+	{
+		CompoundNBT tag = new CompoundNBT();
+		SyncPlan plan = SyncPlan.of(this.getClass());
+		for (int index = 0; index < plan.size(); index++)
+		{
+			SyncField field = plan.getField(index);
+			if ((dirtyFields & fieldBit(index)) != 0 && field.isOnPacket())
+			{
+				field.write(this, tag);
+			}
+		}
+		return tag;
 	}
 
 	/**
@@ -84,15 +425,57 @@ public abstract class BaseTileEntity<T extends BaseTileEntity<T>> extends TileEn
 		return this.writeData();
 	}
 
+	/**
+	 * Gets a copy of the data from {@link #writeItemStackData()}. The data is cached until the tile entity
+	 * is marked as changed or saved, so repeated loot evaluation doesn't write the tile entity each time.
+	 * Tile entities which {@link #autoDetectChanges() detect changes automatically} aren't cached, and
+	 * sync variables changed without {@link #dataChanged()} or {@link #setChanged()} should call
+	 * {@link #invalidateItemStackData()}.
+	 *
+	 * @return a copy of the item stack data, or {@code null} if there is none
+	 */
+	@Nullable
+	public CompoundNBT getItemStackData()
+	{
+		CompoundNBT data = this.itemStackData;
+		if (data == null || this.autoDetectChanges())
+		{
+			data = this.writeItemStackData();
+			if (data == null)
+			{
+				data = new CompoundNBT();
+			}
+			this.itemStackData = data;
+		}
+		return data.isEmpty() ? null : data.copy();
+	}
+
+	/**
+	 * Clears the cached item stack data, see {@link #getItemStackData()}.
+	 */
+	protected void invalidateItemStackData()
+	{
+		this.itemStackData = null;
+	}
+
+	@Override
+	public void setChanged()
+	{
+		this.itemStackData = null;
+		super.setChanged();
+	}
+
 	/**
 	 * Reads data stored by {@link #writeData()}, {@link #writeClientData()},
-	 * and {@link #writeItemStackData()}.
+	 * and {@link #writeItemStackData()}. Update packets may only contain the
+	 * fields which changed, see {@link #dataChanged(String)}.
 	 *
 	 * @param tag data to be read
 	 */
 	public void readData(CompoundNBT tag)
 	{
-		SyncVariable.Helper.readSyncVars(this, tag);
+		this.itemStackData = null;
+		SyncPlan.of(this.getClass()).read(this, tag);
 	}
 
 	@Nonnull
@@ -100,7 +483,10 @@ public abstract class BaseTileEntity<T extends BaseTileEntity<T>> extends TileEn
 	public CompoundNBT save(@Nonnull CompoundNBT compound)
 	{
 		super.save(compound);
+		this.itemStackData = null;
+		long start = TileProfiler.begin();
 		CompoundNBT data = this.writeData();
+		TileProfiler.end(this.getType(), TileProfiler.Section.WRITE_DATA, start);
 		if (data != null && !data.isEmpty())
 		{
 			compound.put("data", data);
@@ -112,7 +498,7 @@ public abstract class BaseTileEntity<T extends BaseTileEntity<T>> extends TileEn
 	public void load(@Nonnull BlockState state, @Nonnull CompoundNBT nbt)
 	{
 		super.load(state, nbt);
-		this.readData(nbt.getCompound("data"));
+		this.profiledReadData(nbt.getCompound("data"));
 	}
 
 	@Nonnull
@@ -120,7 +506,9 @@ public abstract class BaseTileEntity<T extends BaseTileEntity<T>> extends TileEn
 	public CompoundNBT getUpdateTag()
 	{
 		CompoundNBT tag = super.save(new CompoundNBT());
+		long start = TileProfiler.begin();
 		CompoundNBT data = this.writeClientData();
+		TileProfiler.end(this.getType(), TileProfiler.Section.WRITE_CLIENT_DATA, start);
 		if (data != null && !data.isEmpty())
 		{
 			tag.put("data", data);
@@ -132,16 +520,20 @@ public abstract class BaseTileEntity<T extends BaseTileEntity<T>> extends TileEn
 	public void handleUpdateTag(BlockState state, CompoundNBT tag)
 	{
 		super.load(state, tag);
-		this.readData(tag.getCompound("data"));
+		this.profiledReadData(tag.getCompound("data"));
 	}
 
 	@Override
 	public SUpdateTileEntityPacket getUpdatePacket()
 	{
-		if (this.dataChanged)
+		if (this.dirtyFields != 0)
 		{
-			this.dataChanged = false;
-			return new SUpdateTileEntityPacket(this.worldPosition, 0, this.writeClientData());
+			long dirtyFields = this.dirtyFields;
+			this.dirtyFields = 0;
+			long start = TileProfiler.begin();
+			CompoundNBT data = dirtyFields == ALL_FIELDS ? this.writeClientData() : this.writeClientData(dirtyFields);
+			TileProfiler.end(this.getType(), TileProfiler.Section.WRITE_CLIENT_DATA, start);
+			return new SUpdateTileEntityPacket(this.worldPosition, 0, data);
 		}
 		return null;
 	}
@@ -149,6 +541,13 @@ public abstract class BaseTileEntity<T extends BaseTileEntity<T>> extends TileEn
 	@Override
 	public void onDataPacket(NetworkManager net, SUpdateTileEntityPacket pkt)
 	{
-		this.readData(pkt.getTag());
+		this.profiledReadData(pkt.getTag());
+	}
+
+	private void profiledReadData(CompoundNBT tag)
+	{
+		long start = TileProfiler.begin();
+		this.readData(tag);
+		TileProfiler.end(this.getType(), TileProfiler.Section.READ_DATA, start);
 	}
 }
@@ -19,15 +19,38 @@
 package com.withertech.witherlib.tile;
 
 import com.withertech.witherlib.nbt.SyncVariable;
+import net.minecraft.block.BlockState;
 import net.minecraft.nbt.CompoundNBT;
 import net.minecraft.tileentity.ITickableTileEntity;
 import net.minecraft.tileentity.TileEntityType;
 
+import javax.annotation.Nonnull;
+
 public abstract class MachineTileEntity<T extends MachineTileEntity<T>> extends BaseTileEntity<T>
 		implements ITickableTileEntity
 {
 	@SyncVariable(name = "progress")
 	protected int progress = 0;
+	/**
+	 * Whether the machine is idle and skips its ticks until it is woken up
+	 */
+	private boolean sleeping = false;
+	/**
+	 * Game time of the last tick the machine was processed, or {@code -1} if it just started or woke up
+	 */
+	private long lastProcessTime = -1;
+	/**
+	 * Number of ticks the next {@link #process()} should advance the machine by
+	 */
+	private int pendingTicks = 1;
+	/**
+	 * Game time the machine was saved at, read from the saved data
+	 */
+	private long savedTime = -1;
+	/**
+	 * Ticks the machine was unloaded for, simulated on the first tick after loading
+	 */
+	private long offlineTicks = 0;
 
 	public MachineTileEntity(TileEntityType<T> tileEntityTypeIn)
 	{
@@ -38,8 +61,30 @@ public abstract class MachineTileEntity<T extends MachineTileEntity<T>> extends
 
 	public abstract void onStart();
 
+	/**
+	 * Called every tick while the machine is running.
+	 *
+	 * @param progress the current progress
+	 * @see #syncsProgressOnly()
+	 */
 	public abstract void onTick(int progress);
 
+	/**
+	 * Called while the machine is running to advance it by several ticks at once, see {@link #getTickInterval()}.
+	 * By default this calls {@link #onTick(int)} for every tick, override it to handle all ticks at once.
+	 *
+	 * @param progress     the progress at the first of the ticks
+	 * @param ticksElapsed the number of ticks to advance by, {@code progress + ticksElapsed} never
+	 *                     exceeds {@link #getMaxProgress()}
+	 */
+	public void onTick(int progress, int ticksElapsed)
+	{
+		for (int tick = 0; tick < ticksElapsed; tick++)
+		{
+			onTick(progress + tick);
+		}
+	}
+
 	public abstract void onFinish();
 
 	public abstract int getMaxProgress();
@@ -49,33 +94,187 @@ public abstract class MachineTileEntity<T extends MachineTileEntity<T>> extends
 		return progress;
 	}
 
+	public boolean isSleeping()
+	{
+		return sleeping;
+	}
+
+	/**
+	 * Wakes the machine up if it is sleeping, so it will check {@link #canMachineRun()} again next tick.
+	 * Called when data changes, when a neighbour changes and when data is read.
+	 */
+	public void wake()
+	{
+		if (sleeping)
+		{
+			sleeping = false;
+			lastProcessTime = -1;
+		}
+	}
+
+	/**
+	 * Gets the number of ticks between two runs of the machine's logic. Each run advances the progress by
+	 * the number of ticks since the previous run, through {@link #onTick(int, int)}. Machines of the same type
+	 * are spread over the ticks of the interval based on their position.
+	 *
+	 * @return the number of ticks between runs
+	 */
+	protected int getTickInterval()
+	{
+		return 1;
+	}
+
+	/**
+	 * Whether this machine runs in parallel mode. A parallel machine isn't processed in its own tick,
+	 * instead all parallel machines of a world first run {@link #compute()} in parallel at the end of the
+	 * world tick, and are then processed one by one on the server thread.
+	 *
+	 * @return {@code true} to run the machine in parallel mode
+	 */
+	protected boolean isParallel()
+	{
+		return false;
+	}
+
+	/**
+	 * Reads everything {@link #compute()} needs from the world, such as neighbouring blocks, tile entities or
+	 * their capabilities, into fields of the machine. Called on the server thread right before the parallel
+	 * compute phase.
+	 *
+	 * @see #isParallel()
+	 */
+	protected void prepareCompute()
+	{
+	}
+
+	/**
+	 * Does the expensive, side-effect-free work of a parallel machine, such as recipe matching.
+	 * Called on a worker thread while the server thread waits for the compute phase to finish, so this must
+	 * not access the world at all, not even to read block states or tile entities. Chunk access from another
+	 * thread waits for the server thread and deadlocks the server. Work on the data read in
+	 * {@link #prepareCompute()} instead, and don't modify other tile entities or call {@link #dataChanged()}.
+	 * Store the result in fields which are used by {@link #canMachineRun()}, {@link #onStart()},
+	 * {@link #onTick(int)} and {@link #onFinish()}, which commit the changes.
+	 *
+	 * @see #isParallel()
+	 */
+	protected void compute()
+	{
+	}
+
+	/**
+	 * Whether only {@link #progress} is synced while the machine is running, instead of all its sync variables.
+	 * Machines which opt in have to call {@link #dataChanged()} themselves when {@link #onTick(int)} changes
+	 * other synced data. Starting and finishing always sync everything.
+	 *
+	 * @return {@code true} to only sync the progress between start and finish
+	 */
+	protected boolean syncsProgressOnly()
+	{
+		return false;
+	}
+
+	/**
+	 * Gets the number of ticks between checks of {@link #canMachineRun()} while the machine is sleeping,
+	 * for changes which don't wake the machine up. Return {@code 0} to only rely on {@link #wake()}.
+	 *
+	 * @return the number of ticks between checks while sleeping
+	 */
+	protected int getIdleCheckInterval()
+	{
+		return 20;
+	}
+
+	/**
+	 * Whether the machine should make progress while its chunk is unloaded. The game time is saved with
+	 * the machine, and when it is loaded again the elapsed ticks are simulated on its first tick through
+	 * {@link #simulateOffline(int)}.
+	 *
+	 * @return {@code true} to simulate the ticks the machine was unloaded for
+	 */
+	protected boolean simulatesOffline()
+	{
+		return false;
+	}
+
+	/**
+	 * Gets the maximum number of unloaded ticks which are simulated, longer periods are cut off.
+	 *
+	 * @return the maximum number of ticks to simulate
+	 */
+	protected int getMaxOfflineTicks()
+	{
+		return 72000;
+	}
+
+	/**
+	 * Simulates the ticks the machine was unloaded for. By default this advances the machine through
+	 * {@link #onStart()}, {@link #onTick(int, int)} and {@link #onFinish()} as if it had been loaded,
+	 * override it to compute the result in closed form instead.
+	 *
+	 * @param ticks the number of ticks the machine was unloaded for
+	 */
+	protected void simulateOffline(int ticks)
+	{
+		if (isParallel())
+		{
+			prepareCompute();
+			compute();
+		}
+		pendingTicks = ticks;
+		process();
+	}
+
 	@Override
-	protected CompoundNBT writeData()
+	public void onLoad()
 	{
-		return SyncVariable.Helper.writeSyncVars(
-				MachineTileEntity.class,
-				this,
-				super.writeData(),
-				SyncVariable.Type.WRITE
-		);
+		super.onLoad();
+		if (savedTime >= 0 && level != null && !level.isClientSide() && simulatesOffline())
+		{
+			offlineTicks = Math.max(level.getGameTime() - savedTime, 0);
+		}
+		savedTime = -1;
 	}
 
 	@Override
-	protected CompoundNBT writeClientData()
+	public void dataChanged()
 	{
-		return SyncVariable.Helper.writeSyncVars(
-				MachineTileEntity.class,
-				this,
-				super.writeClientData(),
-				SyncVariable.Type.PACKET
-		);
+		super.dataChanged();
+		wake();
+	}
+
+	@Override
+	public void dataChanged(String field)
+	{
+		super.dataChanged(field);
+		wake();
+	}
+
+	@Nonnull
+	@Override
+	public CompoundNBT save(@Nonnull CompoundNBT compound)
+	{
+		super.save(compound);
+		// only saved with the world, item stacks and client data shouldn't carry the time
+		if (level != null && simulatesOffline())
+		{
+			compound.putLong("savedTime", level.getGameTime());
+		}
+		return compound;
+	}
+
+	@Override
+	public void load(@Nonnull BlockState state, @Nonnull CompoundNBT nbt)
+	{
+		super.load(state, nbt);
+		savedTime = nbt.contains("savedTime") ? nbt.getLong("savedTime") : -1;
 	}
 
 	@Override
 	public void readData(CompoundNBT tag)
 	{
 		super.readData(tag);
-		SyncVariable.Helper.readSyncVars(MachineTileEntity.class, this, tag);
+		wake();
 	}
 
 	@Override
@@ -83,37 +282,120 @@ public abstract class MachineTileEntity<T extends MachineTileEntity<T>> extends
 	{
 		if (level != null && !level.isClientSide())
 		{
-			boolean needUpdate = false;
-			if (canMachineRun())
+			if (offlineTicks > 0)
 			{
-				if (progress == 0)
-				{
-					onStart();
-					progress++;
-					needUpdate = true;
-				} else if (progress < getMaxProgress())
+				// neighbouring chunks may not be loaded in onLoad(), so catch up on the first tick instead
+				int ticks = (int) Math.min(offlineTicks, getMaxOfflineTicks());
+				offlineTicks = 0;
+				wake();
+				simulateOffline(ticks);
+				lastProcessTime = level.getGameTime();
+				return;
+			}
+			if (sleeping)
+			{
+				int idleInterval = getIdleCheckInterval();
+				if (idleInterval <= 0 || !isPhase(idleInterval))
 				{
-					onTick(progress);
-					progress++;
-					if (progress % 2 == 0)
-					{
-						needUpdate = true;
-					}
-				} else if (progress >= getMaxProgress())
+					return;
+				}
+				// parallel machines may need compute() before they know whether they can run
+				if (!isParallel() && !canMachineRun())
 				{
-					onFinish();
-					progress = 0;
-					needUpdate = true;
+					return;
 				}
+				wake();
+			}
+			int interval = Math.max(getTickInterval(), 1);
+			if (interval > 1 && !isPhase(interval))
+			{
+				return;
+			}
+			long time = level.getGameTime();
+			pendingTicks = lastProcessTime < 0 ? 1 : (int) Math.min(time - lastProcessTime, interval);
+			lastProcessTime = time;
+			if (isParallel())
+			{
+				ParallelMachineScheduler.schedule(this);
 			} else
 			{
+				process();
+			}
+		}
+	}
+
+	private boolean isPhase(int interval)
+	{
+		return Math.floorMod(level.getGameTime() + worldPosition.hashCode(), interval) == 0;
+	}
+
+	/**
+	 * Advances the machine by the pending number of ticks, called on the server thread.
+	 */
+	void process()
+	{
+		long start = TileProfiler.begin();
+		// progress and the subclass' state change on ticks which don't sync
+		invalidateItemStackData();
+		boolean needUpdate = false;
+		boolean idle = false;
+		int oldProgress = progress;
+		int remaining = pendingTicks;
+		while (remaining > 0)
+		{
+			if (!canMachineRun())
+			{
+				// only sync the reset once, then sleep until something changes
+				needUpdate |= progress != 0;
+				progress = 0;
+				idle = true;
+				break;
+			}
+			if (progress == 0)
+			{
+				long section = TileProfiler.begin();
+				onStart();
+				TileProfiler.end(getType(), TileProfiler.Section.ON_START, section);
+				progress++;
+				remaining--;
+				needUpdate = true;
+			} else if (progress < getMaxProgress())
+			{
+				int ticks = Math.min(remaining, getMaxProgress() - progress);
+				long section = TileProfiler.begin();
+				onTick(progress, ticks);
+				TileProfiler.end(getType(), TileProfiler.Section.ON_TICK, section);
+				progress += ticks;
+				remaining -= ticks;
+			} else
+			{
+				long section = TileProfiler.begin();
+				onFinish();
+				TileProfiler.end(getType(), TileProfiler.Section.ON_FINISH, section);
 				progress = 0;
+				remaining--;
 				needUpdate = true;
 			}
-			if (needUpdate)
+		}
+		if (needUpdate)
+		{
+			dataChanged();
+		} else if (progress / 2 != oldProgress / 2)
+		{
+			// sync the progress every other tick
+			if (syncsProgressOnly())
+			{
+				dataChanged("progress");
+			} else
 			{
 				dataChanged();
 			}
 		}
+		if (idle)
+		{
+			// after dataChanged(), which wakes the machine
+			sleeping = true;
+		}
+		TileProfiler.end(getType(), TileProfiler.Section.TICK, start);
 	}
 }
@@ -0,0 +1,200 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.withertech.witherlib.tile;
+
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.util.LazyOptional;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Caches the capabilities of the neighbours of a {@link BaseTileEntity} per side. An entry is looked up
+ * again once the neighbour's capability is invalidated, the neighbour changes, is removed or unloaded. Neighbours
+ * without the capability are looked up again every {@value #RECHECK_INTERVAL} ticks.
+ *
+ * @author Witherking25
+ */
+final class NeighbourCache
+{
+	/**
+	 * Ticks between looking up neighbours again which had no capability
+	 */
+	private static final int RECHECK_INTERVAL = 20;
+	private static final Direction[] DIRECTIONS = Direction.values();
+
+	// tile entities only look up a few capabilities, so a linear search beats a map
+	private Capability<?>[] capabilities = new Capability<?>[0];
+	private Entry<?>[][] entries = new Entry<?>[0][];
+
+	@SuppressWarnings("unchecked")
+	<T> Entry<T> get(World world, BlockPos origin, Capability<T> capability, Direction side)
+	{
+		Entry<T> entry = null;
+		for (int index = 0; index < this.capabilities.length; index++)
+		{
+			if (this.capabilities[index] == capability)
+			{
+				entry = (Entry<T>) this.entries[index][side.ordinal()];
+				break;
+			}
+		}
+		if (entry == null)
+		{
+			entry = this.add(capability, side);
+		}
+		if (!entry.valid || entry.isStale(world))
+		{
+			entry.resolve(world, origin, capability, side);
+		}
+		return entry;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> Entry<T> add(Capability<T> capability, Direction side)
+	{
+		int index = this.capabilities.length;
+		this.capabilities = Arrays.copyOf(this.capabilities, index + 1);
+		this.entries = Arrays.copyOf(this.entries, index + 1);
+		this.capabilities[index] = capability;
+		this.entries[index] = new Entry<?>[DIRECTIONS.length];
+		for (Direction direction : DIRECTIONS)
+		{
+			this.entries[index][direction.ordinal()] = new Entry<>();
+		}
+		return (Entry<T>) this.entries[index][side.ordinal()];
+	}
+
+	/**
+	 * Marks the entries of the given side to be looked up again, unless the neighbour is still the same tile entity.
+	 * Changes of its capabilities invalidate the entries through the capabilities' listeners.
+	 */
+	void invalidate(World world, BlockPos neighbour, Direction side)
+	{
+		for (Entry<?>[] entries : this.entries)
+		{
+			Entry<?> entry = entries[side.ordinal()];
+			if (!entry.isSameNeighbour(world, neighbour))
+			{
+				entry.invalidate();
+			}
+		}
+	}
+
+	void invalidateAll()
+	{
+		for (Entry<?>[] entries : this.entries)
+		{
+			for (Entry<?> entry : entries)
+			{
+				entry.invalidate();
+			}
+		}
+	}
+
+	static final class Entry<T>
+	{
+		private LazyOptional<T> capability = LazyOptional.empty();
+		@Nullable
+		private T value;
+		/**
+		 * The capability this entry added its invalidation listener to
+		 */
+		@Nullable
+		private LazyOptional<T> listening;
+		@Nullable
+		private TileEntity tile;
+		private long nextCheck;
+		private boolean valid;
+
+		LazyOptional<T> getCapability()
+		{
+			return this.capability;
+		}
+
+		@Nullable
+		T getValue()
+		{
+			return this.value;
+		}
+
+		private boolean isStale(World world)
+		{
+			if (this.value == null)
+			{
+				// neighbours may gain the capability without a neighbour update
+				return world.getGameTime() >= this.nextCheck;
+			}
+			// unloading a chunk doesn't invalidate the capabilities of its tile entities
+			return this.tile.isRemoved() || !world.isLoaded(this.tile.getBlockPos());
+		}
+
+		private boolean isSameNeighbour(World world, BlockPos pos)
+		{
+			return this.valid && this.tile != null && !this.tile.isRemoved() && world.isLoaded(pos) &&
+					world.getBlockEntity(pos) == this.tile;
+		}
+
+		private void resolve(World world, BlockPos origin, Capability<T> capability, Direction side)
+		{
+			BlockPos pos = origin.relative(side);
+			if (!world.isLoaded(pos))
+			{
+				// unloaded neighbours don't cause a neighbour update once they load, so don't cache them
+				this.invalidate();
+				return;
+			}
+			TileEntity tile = world.getBlockEntity(pos);
+			if (tile != null && tile.isRemoved())
+			{
+				tile = null;
+			}
+			LazyOptional<T> result = tile == null ? LazyOptional.empty() : tile.getCapability(capability, side.getOpposite());
+			this.capability = result;
+			this.value = result.orElse(null);
+			this.tile = tile;
+			this.nextCheck = world.getGameTime() + RECHECK_INTERVAL;
+			this.valid = true;
+			// neighbour updates often resolve the same optional again, which must not collect listeners
+			if (this.value != null && this.listening != result)
+			{
+				this.listening = result;
+				result.addListener(invalidated ->
+				{
+					if (this.capability == invalidated)
+					{
+						this.invalidate();
+					}
+				});
+			}
+		}
+
+		private void invalidate()
+		{
+			this.capability = LazyOptional.empty();
+			this.value = null;
+			this.tile = null;
+			this.valid = false;
+		}
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.withertech.witherlib.tile;
+
+import com.withertech.witherlib.WitherLib;
+import net.minecraft.world.World;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.world.WorldEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Runs parallel {@link MachineTileEntity}s at the end of the world tick. First every machine in the world reads
+ * its inputs from the world in {@link MachineTileEntity#prepareCompute()} on the server thread, then their
+ * side-effect-free {@link MachineTileEntity#compute()} is run in parallel on a fork-join pool, and finally the
+ * machines are ticked one by one on the server thread.
+ *
+ * @author Witherking25
+ * @see MachineTileEntity#isParallel()
+ */
+public final class ParallelMachineScheduler
+{
+	/**
+	 * Below this number of machines the compute phase is run on the server thread
+	 */
+	private static final int PARALLEL_THRESHOLD = 8;
+	private static final ForkJoinPool POOL = new ForkJoinPool(
+			Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+			pool ->
+			{
+				ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				thread.setName("WitherLib Machine Worker #" + thread.getPoolIndex());
+				thread.setDaemon(true);
+				return thread;
+			},
+			null,
+			false
+	);
+	private static final Map<World, ParallelMachineScheduler> SCHEDULERS = new WeakHashMap<>();
+
+	private final List<MachineTileEntity<?>> machines = new ArrayList<>();
+
+	private ParallelMachineScheduler()
+	{
+	}
+
+	/**
+	 * Schedules the given machine to be computed and ticked at the end of this world tick.
+	 *
+	 * @param machine the machine to be ticked
+	 */
+	static void schedule(MachineTileEntity<?> machine)
+	{
+		SCHEDULERS.computeIfAbsent(machine.getLevel(), w -> new ParallelMachineScheduler()).machines.add(machine);
+	}
+
+	public static void onWorldTick(TickEvent.WorldTickEvent event)
+	{
+		if (event.phase == TickEvent.Phase.END && !event.world.isClientSide())
+		{
+			ParallelMachineScheduler scheduler = SCHEDULERS.get(event.world);
+			if (scheduler != null && !scheduler.machines.isEmpty())
+			{
+				scheduler.run(event.world);
+			}
+		}
+	}
+
+	public static void onWorldUnload(WorldEvent.Unload event)
+	{
+		if (event.getWorld() instanceof World)
+		{
+			SCHEDULERS.remove((World) event.getWorld());
+		}
+	}
+
+	private void run(World world)
+	{
+		List<MachineTileEntity<?>> machines = new ArrayList<>(this.machines);
+		this.machines.clear();
+		machines.removeIf(machine -> machine.isRemoved() || machine.getLevel() != world);
+
+		// the server thread is blocked during the parallel phase, so the world may only be read before it
+		machines.removeIf(machine -> !prepare(machine));
+		if (machines.size() < PARALLEL_THRESHOLD)
+		{
+			machines.forEach(ParallelMachineScheduler::compute);
+		} else
+		{
+			POOL.submit(() -> machines.parallelStream().forEach(ParallelMachineScheduler::compute)).join();
+		}
+
+		for (MachineTileEntity<?> machine : machines)
+		{
+			if (!machine.isRemoved())
+			{
+				machine.process();
+			}
+		}
+	}
+
+	private static boolean prepare(MachineTileEntity<?> machine)
+	{
+		try
+		{
+			machine.prepareCompute();
+			return true;
+		} catch (RuntimeException e)
+		{
+			WitherLib.LOGGER.error("Failed to prepare machine at " + machine.getBlockPos(), e);
+			return false;
+		}
+	}
+
+	private static void compute(MachineTileEntity<?> machine)
+	{
+		long start = TileProfiler.begin();
+		try
+		{
+			machine.compute();
+		} catch (RuntimeException e)
+		{
+			WitherLib.LOGGER.error("Failed to compute machine at " + machine.getBlockPos(), e);
+		}
+		TileProfiler.end(machine.getType(), TileProfiler.Section.COMPUTE, start);
+	}
+}
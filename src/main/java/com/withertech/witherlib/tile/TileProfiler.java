@@ -0,0 +1,280 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.withertech.witherlib.tile;
+
+import net.minecraft.tileentity.TileEntityType;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Opt-in profiler measuring how long the callbacks of {@link BaseTileEntity} and {@link MachineTileEntity} take,
+ * aggregated per {@link TileEntityType}. While disabled, every measured site only costs a single static flag check.
+ *
+ * @author Witherking25
+ */
+public final class TileProfiler
+{
+	private static volatile boolean enabled = false;
+	private static long startTime;
+	private static final Map<TileEntityType<?>, Map<Section, Histogram>> RESULTS = new ConcurrentHashMap<>();
+
+	private TileProfiler()
+	{
+	}
+
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Clears the previous results and starts profiling.
+	 */
+	public static void start()
+	{
+		RESULTS.clear();
+		startTime = System.nanoTime();
+		enabled = true;
+	}
+
+	/**
+	 * Stops profiling, the results are kept until the profiler is started again.
+	 */
+	public static void stop()
+	{
+		enabled = false;
+	}
+
+	/**
+	 * @return the time in nanoseconds the results have been collected over
+	 */
+	public static long getDuration()
+	{
+		return startTime == 0 ? 0 : System.nanoTime() - startTime;
+	}
+
+	/**
+	 * Starts measuring a section.
+	 *
+	 * @return the start time to be passed to {@link #end(TileEntityType, Section, long)}, or {@code 0} when disabled
+	 */
+	public static long begin()
+	{
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Records the time since {@code start} for the given tile entity type and section.
+	 *
+	 * @param type    type of the measured tile entity
+	 * @param section the measured section
+	 * @param start   the time returned by {@link #begin()}
+	 */
+	public static void end(TileEntityType<?> type, Section section, long start)
+	{
+		if (start != 0 && enabled)
+		{
+			long time = System.nanoTime() - start;
+			Map<Section, Histogram> sections = RESULTS.computeIfAbsent(type, t -> new EnumMap<>(Section.class));
+			Histogram histogram;
+			synchronized (sections)
+			{
+				histogram = sections.computeIfAbsent(section, s -> new Histogram());
+			}
+			histogram.record(time);
+		}
+	}
+
+	/**
+	 * @return a snapshot of the results, sorted by total time, highest first
+	 */
+	public static List<Entry> getResults()
+	{
+		List<Entry> entries = new ArrayList<>();
+		RESULTS.forEach((type, sections) ->
+		{
+			synchronized (sections)
+			{
+				sections.forEach((section, histogram) -> entries.add(histogram.snapshot(type, section)));
+			}
+		});
+		entries.sort((a, b) -> Long.compare(b.getTotal(), a.getTotal()));
+		return entries;
+	}
+
+	/**
+	 * Writes the results as comma separated values to the given {@code writer}.
+	 *
+	 * @param writer writer to write to
+	 * @throws IOException if writing fails
+	 */
+	public static void writeCsv(Writer writer) throws IOException
+	{
+		PrintWriter printer = new PrintWriter(writer);
+		printer.println("type,section,count,total_ns,mean_ns,p50_ns,p95_ns,p99_ns,max_ns");
+		for (Entry entry : getResults())
+		{
+			printer.println(entry.getType().getRegistryName() + "," + entry.getSection().name().toLowerCase() + "," +
+					entry.getCount() + "," + entry.getTotal() + "," + entry.getMean() + "," +
+					entry.getPercentile(0.5) + "," + entry.getPercentile(0.95) + "," +
+					entry.getPercentile(0.99) + "," + entry.getMax());
+		}
+		printer.flush();
+		if (printer.checkError())
+		{
+			throw new IOException("Failed to write tile profiler results!");
+		}
+	}
+
+	public enum Section
+	{
+		TICK, ON_START, ON_TICK, ON_FINISH, WRITE_DATA, WRITE_CLIENT_DATA, READ_DATA, COMPUTE
+	}
+
+	/**
+	 * Log-linear histogram with four buckets per power of two, so percentiles are accurate within 25%
+	 */
+	private static class Histogram
+	{
+		private static final int SUB_BUCKETS = 4;
+
+		private final long[] buckets = new long[64 * SUB_BUCKETS];
+		private long count;
+		private long total;
+		private long max;
+
+		private static int bucket(long time)
+		{
+			if (time < SUB_BUCKETS)
+			{
+				return (int) Math.max(time, 0);
+			}
+			int exponent = 63 - Long.numberOfLeadingZeros(time);
+			int sub = (int) (time >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+			return exponent * SUB_BUCKETS + sub;
+		}
+
+		private static long upperBound(int bucket)
+		{
+			if (bucket < SUB_BUCKETS)
+			{
+				return bucket;
+			}
+			int exponent = bucket / SUB_BUCKETS;
+			int sub = bucket % SUB_BUCKETS;
+			return ((long) (SUB_BUCKETS + sub + 1) << (exponent - 2)) - 1;
+		}
+
+		private synchronized void record(long time)
+		{
+			this.buckets[bucket(time)]++;
+			this.count++;
+			this.total += time;
+			this.max = Math.max(this.max, time);
+		}
+
+		private synchronized Entry snapshot(TileEntityType<?> type, Section section)
+		{
+			return new Entry(type, section, this.buckets.clone(), this.count, this.total, this.max);
+		}
+	}
+
+	/**
+	 * The results of a single section of a tile entity type
+	 */
+	public static class Entry
+	{
+		private final TileEntityType<?> type;
+		private final Section section;
+		private final long[] buckets;
+		private final long count;
+		private final long total;
+		private final long max;
+
+		private Entry(TileEntityType<?> type, Section section, long[] buckets, long count, long total, long max)
+		{
+			this.type = type;
+			this.section = section;
+			this.buckets = buckets;
+			this.count = count;
+			this.total = total;
+			this.max = max;
+		}
+
+		public TileEntityType<?> getType()
+		{
+			return type;
+		}
+
+		public Section getSection()
+		{
+			return section;
+		}
+
+		public long getCount()
+		{
+			return count;
+		}
+
+		/**
+		 * @return the total time in nanoseconds
+		 */
+		public long getTotal()
+		{
+			return total;
+		}
+
+		public long getMean()
+		{
+			return count == 0 ? 0 : total / count;
+		}
+
+		public long getMax()
+		{
+			return max;
+		}
+
+		/**
+		 * Gets an upper bound of the given percentile.
+		 *
+		 * @param percentile percentile between 0 and 1
+		 * @return the percentile in nanoseconds
+		 */
+		public long getPercentile(double percentile)
+		{
+			long target = (long) Math.ceil(percentile * count);
+			long seen = 0;
+			for (int bucket = 0; bucket < buckets.length; bucket++)
+			{
+				seen += buckets[bucket];
+				if (seen >= target && seen > 0)
+				{
+					return Math.min(Histogram.upperBound(bucket), max);
+				}
+			}
+			return max;
+		}
+	}
+}
@@ -0,0 +1,178 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.withertech.witherlib.tile;
+
+import com.withertech.witherlib.gui.TileEntityBaseContainer;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.world.WorldEvent;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Collects the tile entities which changed during a tick and sends their update packets once at
+ * the end of the tick. A tile entity is synced at most once every {@link BaseTileEntity#getSyncInterval()}
+ * ticks, unless a player has its gui open.
+ * Tile entities which {@link BaseTileEntity#autoDetectChanges() detect changes automatically} are
+ * checked for changes each tick before the updates are sent.
+ *
+ * @author Witherking25
+ */
+public final class TileSyncScheduler
+{
+	private static final Map<World, TileSyncScheduler> SCHEDULERS = new WeakHashMap<>();
+
+	private final Set<BaseTileEntity<?>> pending = new LinkedHashSet<>();
+	private final Set<BaseTileEntity<?>> watched = new LinkedHashSet<>();
+
+	private TileSyncScheduler()
+	{
+	}
+
+	/**
+	 * Schedules an update packet for the given tile entity. Must only be called server-side.
+	 *
+	 * @param tile the tile entity which changed
+	 */
+	public static void schedule(BaseTileEntity<?> tile)
+	{
+		World world = tile.getLevel();
+		if (world == null || world.isClientSide())
+		{
+			throw new IllegalStateException("This must only be called server-side!");
+		}
+		SCHEDULERS.computeIfAbsent(world, w -> new TileSyncScheduler()).pending.add(tile);
+	}
+
+	/**
+	 * Checks the given tile entity for changes every tick until it is removed. Must only be called server-side.
+	 *
+	 * @param tile the tile entity to watch
+	 */
+	public static void watch(BaseTileEntity<?> tile)
+	{
+		World world = tile.getLevel();
+		if (world == null || world.isClientSide())
+		{
+			throw new IllegalStateException("This must only be called server-side!");
+		}
+		SCHEDULERS.computeIfAbsent(world, w -> new TileSyncScheduler()).watched.add(tile);
+	}
+
+	/**
+	 * Stops checking the given tile entity for changes.
+	 *
+	 * @param tile the tile entity to stop watching
+	 */
+	public static void unwatch(BaseTileEntity<?> tile)
+	{
+		TileSyncScheduler scheduler = SCHEDULERS.get(tile.getLevel());
+		if (scheduler != null)
+		{
+			scheduler.watched.remove(tile);
+		}
+	}
+
+	public static void onWorldTick(TickEvent.WorldTickEvent event)
+	{
+		if (event.phase == TickEvent.Phase.END && !event.world.isClientSide())
+		{
+			TileSyncScheduler scheduler = SCHEDULERS.get(event.world);
+			if (scheduler != null)
+			{
+				if (!scheduler.watched.isEmpty())
+				{
+					scheduler.detectChanges(event.world);
+				}
+				if (!scheduler.pending.isEmpty())
+				{
+					scheduler.flush(event.world);
+				}
+			}
+		}
+	}
+
+	public static void onWorldUnload(WorldEvent.Unload event)
+	{
+		if (event.getWorld() instanceof World)
+		{
+			SCHEDULERS.remove((World) event.getWorld());
+		}
+	}
+
+	private void detectChanges(World world)
+	{
+		// detectChanges() may schedule the tile, which doesn't touch the watched set
+		Iterator<BaseTileEntity<?>> iterator = this.watched.iterator();
+		while (iterator.hasNext())
+		{
+			BaseTileEntity<?> tile = iterator.next();
+			if (tile.isRemoved() || tile.getLevel() != world)
+			{
+				iterator.remove();
+			} else
+			{
+				tile.detectChanges();
+			}
+		}
+	}
+
+	private void flush(World world)
+	{
+		long time = world.getGameTime();
+		Set<BlockPos> viewed = getViewedPositions(world);
+		Iterator<BaseTileEntity<?>> iterator = this.pending.iterator();
+		while (iterator.hasNext())
+		{
+			BaseTileEntity<?> tile = iterator.next();
+			if (tile.isRemoved() || tile.getLevel() != world)
+			{
+				iterator.remove();
+			} else if (time - tile.lastSyncTime >= tile.getSyncInterval() || viewed.contains(tile.getBlockPos()))
+			{
+				iterator.remove();
+				tile.lastSyncTime = time;
+				tile.sendBlockUpdated();
+			}
+		}
+	}
+
+	/**
+	 * @return the positions of the tile entities players in the given world have a gui open for
+	 */
+	private static Set<BlockPos> getViewedPositions(World world)
+	{
+		Set<BlockPos> positions = new HashSet<>();
+		for (PlayerEntity player : world.players())
+		{
+			if (player.containerMenu instanceof TileEntityBaseContainer)
+			{
+				positions.add(((TileEntityBaseContainer<?, ?>) player.containerMenu).getTilePos());
+			}
+		}
+		return positions;
+	}
+}
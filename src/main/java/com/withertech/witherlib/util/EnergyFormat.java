@@ -22,9 +22,6 @@ import com.withertech.witherlib.WitherLib;
 import com.withertech.witherlib.config.ClientConfig;
 import com.withertech.witherlib.registration.TypedRegKey;
 
-import java.text.NumberFormat;
-import java.util.Locale;
-
 /**
  * Created 7/30/2021 by SuperMartijn642
  */
@@ -44,19 +41,59 @@ public class EnergyFormat
 		type = WitherLib.INSTANCE.REGISTRY.getConfig(TypedRegKey.config("client", ClientConfig.class)).energyType.get();
 	}
 
+	public static String formatEnergy(long energy)
+	{
+		return appendUnit(type.appendEnergy(NumberFormatting.builder(), energy)).toString();
+	}
+
+	public static String formatEnergyPerTick(long energy)
+	{
+		return appendUnit(type.appendEnergy(NumberFormatting.builder(), energy)).append("/t").toString();
+	}
+
+	public static String formatCapacity(long energy, long capacity)
+	{
+		StringBuilder builder = type.appendEnergy(NumberFormatting.builder(), energy).append(" / ");
+		return appendUnit(type.appendEnergy(builder, capacity)).toString();
+	}
+
 	public static String formatEnergy(int energy)
 	{
-		return type.convertEnergy(energy) + " " + type.unit;
+		return formatEnergy((long) energy);
 	}
 
 	public static String formatEnergyPerTick(int energy)
 	{
-		return type.convertEnergy(energy) + " " + type.unit + "/t";
+		return formatEnergyPerTick((long) energy);
 	}
 
 	public static String formatCapacity(int energy, int capacity)
 	{
-		return type.convertEnergy(energy) + " / " + type.convertEnergy(capacity) + " " + type.unit;
+		return formatCapacity((long) energy, (long) capacity);
+	}
+
+	/**
+	 * Formats the energy with an SI prefix, e.g. {@code 1.2k FE}
+	 */
+	public static String formatEnergyCompact(long energy)
+	{
+		return appendUnit(type.appendEnergyCompact(NumberFormatting.builder(), energy)).toString();
+	}
+
+	public static String formatEnergyPerTickCompact(long energy)
+	{
+		return appendUnit(type.appendEnergyCompact(NumberFormatting.builder(), energy)).append("/t").toString();
+	}
+
+	public static String formatCapacityCompact(long energy, long capacity)
+	{
+		StringBuilder builder = type.appendEnergyCompact(NumberFormatting.builder(), energy).append(" / ");
+		return appendUnit(type.appendEnergyCompact(builder, capacity)).toString();
+	}
+
+	private static StringBuilder appendUnit(StringBuilder builder)
+	{
+		return builder.append(' ').append(type.unit);
 	}
 
 	public enum EnergyType
@@ -77,7 +114,22 @@ public class EnergyFormat
 
 		public String convertEnergy(int energy)
 		{
-			return NumberFormat.getNumberInstance(Locale.getDefault()).format(energy);
+			return NumberFormatting.format(energy);
+		}
+
+		public String convertEnergy(long energy)
+		{
+			return NumberFormatting.format(energy);
+		}
+
+		public StringBuilder appendEnergy(StringBuilder builder, long energy)
+		{
+			return NumberFormatting.append(builder, energy);
+		}
+
+		public StringBuilder appendEnergyCompact(StringBuilder builder, long energy)
+		{
+			return NumberFormatting.appendCompact(builder, energy);
 		}
 	}
 }
@@ -0,0 +1,126 @@
+/*
+ * witherlib-forge
+ * Copyright (C) 2021 WitherTech
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.withertech.witherlib.util;
+
+import java.text.FieldPosition;
+import java.text.NumberFormat;
+import java.util.Locale;
+
+/**
+ * Locale aware number formatting without per call allocations.
+ * <p>
+ * {@link NumberFormat} is expensive to look up and not thread safe, so every thread keeps its own formatters for the
+ * current default locale, rebuilt only when the locale changes. The numbers are written straight into a
+ * {@link StringBuilder}, either the caller's or the reusable one from {@link #builder()}.
+ */
+public final class NumberFormatting
+{
+	private static final char[] PREFIXES = {'k', 'M', 'G', 'T', 'P', 'E'};
+	private static final ThreadLocal<NumberFormatting> INSTANCE = ThreadLocal.withInitial(NumberFormatting::new);
+
+	private final StringBuilder builder = new StringBuilder(32);
+	private final StringBuffer buffer = new StringBuffer(32);
+	private final FieldPosition position = new FieldPosition(0);
+	private Locale locale;
+	private NumberFormat format;
+	private NumberFormat compactFormat;
+
+	private NumberFormatting()
+	{
+	}
+
+	private static NumberFormatting get()
+	{
+		NumberFormatting formatting = INSTANCE.get();
+		Locale locale = Locale.getDefault();
+		if (formatting.locale != locale)
+		{
+			formatting.locale = locale;
+			formatting.format = NumberFormat.getNumberInstance(locale);
+			formatting.compactFormat = NumberFormat.getNumberInstance(locale);
+			formatting.compactFormat.setMinimumFractionDigits(0);
+			formatting.compactFormat.setMaximumFractionDigits(1);
+			formatting.compactFormat.setGroupingUsed(false);
+		}
+		return formatting;
+	}
+
+	/**
+	 * Returns this thread's shared builder, cleared. The builder is reused by every call on the same thread, so the
+	 * result has to be turned into a string before calling {@link #builder()}, {@link #format(long)} or
+	 * {@link #formatCompact(long)} again.
+	 */
+	public static StringBuilder builder()
+	{
+		StringBuilder builder = INSTANCE.get().builder;
+		builder.setLength(0);
+		return builder;
+	}
+
+	/**
+	 * Appends {@code value} with the grouping separators of the default locale, e.g. {@code 1,234,567}.
+	 */
+	public static StringBuilder append(StringBuilder builder, long value)
+	{
+		NumberFormatting formatting = get();
+		return formatting.append(builder, formatting.format, value);
+	}
+
+	/**
+	 * Appends {@code value} scaled down with an SI prefix and at most one decimal, e.g. {@code 1.2M}. Values below
+	 * a thousand are appended in full.
+	 */
+	public static StringBuilder appendCompact(StringBuilder builder, long value)
+	{
+		NumberFormatting formatting = get();
+		if (value > -1000 && value < 1000)
+		{
+			return formatting.append(builder, formatting.format, value);
+		}
+
+		double scaled = value;
+		int prefix = -1;
+		// step up a prefix until the rounded value stays below 1000, so 999,960 becomes 1M rather than 1000k
+		while (prefix < PREFIXES.length - 1 && Math.abs(scaled) >= 999.95)
+		{
+			scaled /= 1000;
+			prefix++;
+		}
+		formatting.buffer.setLength(0);
+		formatting.compactFormat.format(scaled, formatting.buffer, formatting.position);
+		return builder.append(formatting.buffer).append(PREFIXES[prefix]);
+	}
+
+	public static String format(long value)
+	{
+		return append(builder(), value).toString();
+	}
+
+	public static String formatCompact(long value)
+	{
+		return appendCompact(builder(), value).toString();
+	}
+
+	private StringBuilder append(StringBuilder builder, NumberFormat format, long value)
+	{
+		this.buffer.setLength(0);
+		format.format(value, this.buffer, this.position);
+		return builder.append(this.buffer);
+	}
+}
@@ -38,7 +38,7 @@ public class TestEnergyScreen extends TileEntityBaseContainerScreen<TestEnergyTi
     @Override
     protected void addWidgets(@Nonnull TestEnergyTile tile)
     {
-        addWidget(new EnergyBarWidget(8, 16, tile.energy::get));
+        addWidget(new EnergyBarWidget(8, 16, () -> tile.energy));
         addWidget(new FluidTankWidget(32, 16, tile.fluid::get, () -> WitherLibTest.INSTANCE.REGISTRY.getNet("main").sendToServer(new TestEnergyTilePacket.TestEnergyTileFluidInteractPacket(this.container.getTilePos()))));
     }
 }
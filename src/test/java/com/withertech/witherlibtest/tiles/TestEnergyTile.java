@@ -1,7 +1,7 @@
 package com.withertech.witherlibtest.tiles;
 
+import com.withertech.witherlib.energy.EnergyBuffer;
 import com.withertech.witherlib.nbt.SyncVariable;
-import com.withertech.witherlib.nbt.wrappers.EnergyStorageNBTWrapper;
 import com.withertech.witherlib.nbt.wrappers.FluidTankNBTWrapper;
 import com.withertech.witherlib.registration.TypedRegKey;
 import com.withertech.witherlib.tile.BaseTileEntity;
@@ -10,7 +10,6 @@ import net.minecraft.util.Direction;
 import net.minecraftforge.common.capabilities.Capability;
 import net.minecraftforge.common.util.LazyOptional;
 import net.minecraftforge.energy.CapabilityEnergy;
-import net.minecraftforge.energy.EnergyStorage;
 import net.minecraftforge.fluids.capability.CapabilityFluidHandler;
 import net.minecraftforge.fluids.capability.templates.FluidTank;
 
@@ -20,22 +19,7 @@ import javax.annotation.Nullable;
 public class TestEnergyTile extends BaseTileEntity<TestEnergyTile>
 {
     @SyncVariable(name = "Energy")
-    public final EnergyStorageNBTWrapper energy = new EnergyStorageNBTWrapper(new EnergyStorage(1000, 10)
-    {
-        @Override
-        public int receiveEnergy(int maxReceive, boolean simulate)
-        {
-            dataChanged();
-            return super.receiveEnergy(maxReceive, simulate);
-        }
-
-        @Override
-        public int extractEnergy(int maxExtract, boolean simulate)
-        {
-            dataChanged();
-            return super.extractEnergy(maxExtract, simulate);
-        }
-    });
+    public final EnergyBuffer energy = new EnergyBuffer(1000, 10).setListener(this::dataChanged);
 
     @SyncVariable(name = "Fluid")
     public final FluidTankNBTWrapper fluid = new FluidTankNBTWrapper(new FluidTank(10000)
@@ -58,7 +42,7 @@ public class TestEnergyTile extends BaseTileEntity<TestEnergyTile>
     {
         if (cap == CapabilityEnergy.ENERGY)
         {
-            return LazyOptional.of(energy::get).cast();
+            return LazyOptional.of(() -> energy).cast();
         }
         else if (cap == CapabilityFluidHandler.FLUID_HANDLER_CAPABILITY)
         {